@@ -0,0 +1,36 @@
+package klotski;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Encoding the Donkey start into a state code and mixing it as the visited table does. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private Board board;
+    private StateCodec codec;
+    private long[] state;
+
+    @Setup
+    public void setUp() {
+        board = SolveBenchmark.board("donkey");
+        PackedBoard packed = new PackedBoard(board);
+        codec = new StateCodec(packed);
+        state = new long[PackedBoard.NUM_TYPES];
+        packed.load(board, state);
+    }
+
+    @Benchmark
+    public int encodeBoard() {
+        return VisitedStore.mix(codec.encode(board), 0L);
+    }
+
+    @Benchmark
+    public int encodeState() {
+        return VisitedStore.mix(codec.encode(state), 0L);
+    }
+}
@@ -0,0 +1,116 @@
+package klotski;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Move generation, one Board move or one state's successors per operation. probe, bulk
+ * and masks cycle through the positions of the Donkey solution: per-piece MoveTable
+ * probing against PackedBoard's bulk successorStates and moveMasks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+    private Board board;
+    private Piece single;
+    private boolean movedRight;
+
+    private PackedBoard packed;
+    private StateCodec codec;
+    private long[] start;
+    private long[] codes;
+    private int[] moves;
+
+    private long[][] path;
+    private int next;
+    private long[] out;
+    private long[] masks;
+
+    @Setup
+    public void setUp() {
+        board = SolveBenchmark.board("donkey");
+        for (Piece piece : board.getPieces()) {
+            if (piece.getTopLeft() == 3) single = piece;
+        }
+        packed = new PackedBoard(board);
+        codec = new StateCodec(packed);
+        start = new long[PackedBoard.NUM_TYPES];
+        packed.load(board, start);
+        codes = new long[packed.maxSuccessors()];
+        moves = new int[packed.maxSuccessors()];
+
+        ArrayList<long[]> states = new ArrayList<>();
+        Board replay = new Board(board);
+        try (BFS bfs = new BFS(board)) {
+            for (BFS.Move move : bfs.solve(new Board(board))) {
+                long[] state = new long[PackedBoard.NUM_TYPES];
+                packed.load(replay, state);
+                states.add(state);
+                for (Piece piece : replay.getPieces()) {
+                    if (piece.getType() == move.type && piece.getTopLeft() == move.fromTopLeft) {
+                        replay.movePiece(piece, move.dir);
+                        break;
+                    }
+                }
+            }
+        }
+        path = states.toArray(new long[0][]);
+        out = new long[packed.successorStatesLength()];
+        masks = new long[PackedBoard.NUM_TYPES * 4];
+    }
+
+    /** Slides the bottom-left single into the gap, or back on alternate calls. */
+    @Benchmark
+    public boolean movePiece() {
+        movedRight = !movedRight;
+        return board.movePiece(single, movedRight ? 'r' : 'l');
+    }
+
+    @Benchmark
+    public int packedSuccessors() {
+        return packed.successors(start, codec, codes, moves);
+    }
+
+    /** Every successor state, probing the move table piece by piece and direction by direction. */
+    @Benchmark
+    public int probe() {
+        long[] state = nextState();
+        MoveTable table = packed.getMoveTable();
+        long occ = packed.occupancy(state);
+        int n = 0;
+        for (int type = 0; type < PackedBoard.NUM_TYPES; type++) {
+            for (long rest = state[type]; rest != 0; rest &= rest - 1) {
+                int entry = table.index(type, Long.numberOfTrailingZeros(rest), 0);
+                for (int d = 0; d < 4; d++, entry++) {
+                    if (!table.isLegal(entry, occ)) continue;
+                    System.arraycopy(state, 0, out, n * PackedBoard.NUM_TYPES, PackedBoard.NUM_TYPES);
+                    out[n * PackedBoard.NUM_TYPES + type] ^= table.topLeftFlip(entry);
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int bulk() {
+        return packed.successorStates(nextState(), out);
+    }
+
+    /** Just the movable pieces per type and direction, as the UI's move hints use. */
+    @Benchmark
+    public int masks() {
+        return packed.moveMasks(nextState(), masks);
+    }
+
+    private long[] nextState() {
+        long[] state = path[next];
+        next = next + 1 == path.length ? 0 : next + 1;
+        return state;
+    }
+}
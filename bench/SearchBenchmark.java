@@ -0,0 +1,75 @@
+package klotski;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * BFS against A* and IDA* with the Manhattan-plus-blocking heuristic, from the start and
+ * from the position NEAR_GOAL moves before the end of an optimal solution. IDA* only runs
+ * from the latter: from the start it takes minutes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int NEAR_GOAL = 20;
+
+    @Param({"donkey", "pennant"})
+    public String layout;
+
+    private Board start;
+    private Board nearGoal;
+
+    @Setup
+    public void setUp() {
+        start = SolveBenchmark.board(layout);
+        ArrayList<BFS.Move> solution;
+        try (BFS bfs = new BFS(start)) {
+            solution = bfs.solve(new Board(start));
+        }
+        nearGoal = new Board(start);
+        for (BFS.Move move : solution.subList(0, solution.size() - NEAR_GOAL)) {
+            for (Piece piece : nearGoal.getPieces()) {
+                if (piece.getType() == move.type && piece.getTopLeft() == move.fromTopLeft) {
+                    nearGoal.movePiece(piece, move.dir);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int bfs() {
+        return bfs(start);
+    }
+
+    @Benchmark
+    public int aStar() {
+        return new AStar(start, Heuristic.MANHATTAN_BLOCKING).solve(new Board(start)).size();
+    }
+
+    @Benchmark
+    public int bfsNearGoal() {
+        return bfs(nearGoal);
+    }
+
+    @Benchmark
+    public int aStarNearGoal() {
+        return new AStar(nearGoal, Heuristic.MANHATTAN_BLOCKING).solve(new Board(nearGoal)).size();
+    }
+
+    @Benchmark
+    public int idaStarNearGoal() {
+        return new IDAStar(nearGoal, Heuristic.MANHATTAN_BLOCKING).solve(new Board(nearGoal)).size();
+    }
+
+    private static int bfs(Board board) {
+        try (BFS bfs = new BFS(board)) {
+            return bfs.solve(new Board(board)).size();
+        }
+    }
+}
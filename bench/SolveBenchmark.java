@@ -0,0 +1,55 @@
+package klotski;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** End-to-end solves of the built-in layouts: BFS.solve, and ParallelBFS on every core. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SolveBenchmark {
+    @Param({"donkey", "pennant", "fiveByFive"})
+    public String layout;
+
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        board = board(layout);
+    }
+
+    @Benchmark
+    public int solve() {
+        try (BFS bfs = new BFS(board)) {
+            return bfs.solve(new Board(board)).size();
+        }
+    }
+
+    @Benchmark
+    public int parallel() {
+        return new ParallelBFS(board).solve(new Board(board)).size();
+    }
+
+    static Board board(String layout) {
+        Board board;
+        switch (layout) {
+            case "donkey" -> {
+                board = new Board();
+                board.initPiecesDonkey();
+            }
+            case "pennant" -> {
+                board = new Board();
+                board.initPiecesPennant();
+            }
+            case "fiveByFive" -> {
+                board = new Board(5, 5);
+                board.initPiecesFiveByFive();
+            }
+            default -> throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,87 @@
+package klotski;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * LongVisitedTable inserts and lookups at increasing load factors, one code per operation.
+ * Each insert invocation adds a batch that takes a fresh table up to the fill level.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class VisitedBenchmark {
+    private static final int EXPECTED = 1 << 20;
+    private static final int BATCH = 1 << 16;
+
+    /** Capacity of a table sized for EXPECTED, so fills are fractions of it. */
+    private static final int CAPACITY = new LongVisitedTable(EXPECTED).capacity();
+
+    @Param({"10", "40", "65"})
+    public int fillPercent;
+
+    private long[] present;
+    private long[] misses;
+    private LongVisitedTable filled;
+    private LongVisitedTable partlyFilled;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        present = randomCodes(1, (int) ((long) CAPACITY * fillPercent / 100));
+        misses = randomCodes(2, BATCH);
+        filled = filledTable(present, present.length);
+    }
+
+    /** The table insert() fills up: the same codes as filled, short by one batch. */
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        partlyFilled = filledTable(present, Math.max(0, present.length - BATCH));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    @OperationsPerInvocation(BATCH)
+    public long insert() {
+        long ids = 0;
+        for (int i = Math.max(0, present.length - BATCH); i < present.length; i++) ids += partlyFilled.addIfAbsent(present[i], 0, 0);
+        return ids;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @OperationsPerInvocation(BATCH)
+    public long findHit() {
+        long ids = 0;
+        for (int i = 0; i < BATCH; i++) ids += filled.find(present[i % present.length]);
+        return ids;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @OperationsPerInvocation(BATCH)
+    public long findMiss() {
+        long ids = 0;
+        for (long code : misses) ids += filled.find(code);
+        return ids;
+    }
+
+    private static long[] randomCodes(long seed, int n) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] codes = new long[n];
+        for (int i = 0; i < n; i++) codes[i] = random.nextLong() >>> 1;
+        return codes;
+    }
+
+    private static LongVisitedTable filledTable(long[] codes, int n) {
+        LongVisitedTable table = new LongVisitedTable(EXPECTED);
+        for (int i = 0; i < n; i++) table.addIfAbsent(codes[i], 0, 0);
+        return table;
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A* over packed states with a pluggable admissible Heuristic.
+ *
+ * Open entries live in a LongHeap as one long each: f in the top bits, then the
+ * complement of g (so deeper entries win ties), then the visited id. A cheaper path to
+ * a known state relinks it and pushes a fresh entry; the old one is skipped as stale
+ * when it is popped.
+ */
+public class AStar {
+    private static final int ROOT_PARENT = -1;
+    private static final int ROOT_MOVE = -1;
+    private static final int MAX_G = 0xFFFF;
+
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final Heuristic heuristic;
+    private final LongVisitedTable visited;
+    private final SolverOptions options;
+    private int[] gById;
+    private int expanded;
+
+    public AStar(Board board, Heuristic heuristic) {
+        this(board, heuristic, new SolverOptions());
+    }
+
+    public AStar(Board board, Heuristic heuristic, SolverOptions options) {
+        packed = new PackedBoard(board);
+        codec = new StateCodec(packed);
+        if (!codec.fitsInLong()) throw new IllegalArgumentException("AStar needs single-long state codes");
+        if (heuristic instanceof PatternDatabase patterns && !patterns.matches(packed)) {
+            throw new IllegalArgumentException("Pattern database is for a different puzzle");
+        }
+        this.heuristic = heuristic;
+        this.options = options;
+        visited = new LongVisitedTable(options.expectedStates);
+        gById = new int[Math.max(16, options.expectedStates + 1)];
+    }
+
+    public LongVisitedTable getVisited() {
+        return visited;
+    }
+
+    /** States taken off the open list and expanded by the last solve. */
+    public int getExpanded() {
+        return expanded;
+    }
+
+    public ArrayList<BFS.Move> solve(Board start) {
+        SolverMonitor monitor = new SolverMonitor(options, visited);
+        try {
+            return solve(start, monitor);
+        }
+        finally {
+            monitor.finish();
+        }
+    }
+
+    private ArrayList<BFS.Move> solve(Board start, SolverMonitor monitor) {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        long[] codes = new long[packed.maxSuccessors()];
+        int[] moves = new int[packed.maxSuccessors()];
+        LongHeap open = new LongHeap(1024);
+
+        packed.load(start, state);
+        int startId = visited.addIfAbsent(codec.encode(state), ROOT_PARENT, ROOT_MOVE);
+        setG(startId, 0);
+        int startH = heuristic.estimate(packed, state);
+        if (startH == Heuristic.UNSOLVABLE) return null;
+        open.push(key(startH, 0, startId));
+
+        while (!open.isEmpty()) {
+            long key = open.pop();
+            int id = (int) key;
+            int g = MAX_G - (int) ((key >>> 32) & MAX_G);
+            if (g != gById[id]) continue; // Superseded by a cheaper path
+
+            codec.decode(visited.getCode(id), state);
+            if (packed.isGoal(state)) return BFS.reconstructMoves(visited, id);
+            expanded++;
+            monitor.expand();
+
+            int n = packed.successors(state, codec, codes, moves);
+            int ng = g + 1;
+            for (int i = 0; i < n; i++) {
+                int nextId = visited.find(codes[i]);
+                if (nextId < 0) {
+                    nextId = visited.addIfAbsent(codes[i], id, moves[i]);
+                    setG(nextId, ng);
+                }
+                else if (ng < gById[nextId]) {
+                    visited.relink(nextId, id, moves[i]);
+                    gById[nextId] = ng;
+                }
+                else {
+                    continue;
+                }
+                // applyMove toggles two bits, so applying the same move again restores state
+                packed.applyMove(state, moves[i]);
+                int h = heuristic.estimate(packed, state);
+                packed.applyMove(state, moves[i]);
+                if (h != Heuristic.UNSOLVABLE) open.push(key(ng + h, ng, nextId));
+            }
+        }
+        return null; // no solution
+    }
+
+    private void setG(int id, int g) {
+        if (id >= gById.length) gById = Arrays.copyOf(gById, Math.max(id + 1, gById.length + (gById.length >>> 1)));
+        gById[id] = g;
+    }
+
+    private static long key(int f, int g, int id) {
+        if (g > MAX_G) throw new IllegalStateException("Search depth over " + MAX_G);
+        return ((long) f << 48) | ((long) (MAX_G - g) << 32) | id;
+    }
+}
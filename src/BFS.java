@@ -1,127 +1,337 @@
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 
-public class BFS {
-    private final Visited visited;
-    private final int goalSquare;
+public class BFS implements AutoCloseable {
+    private final VisitedStore visited;
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final SolverOptions options;
+    private int lastDepth;
+    private boolean mirrorStates;
+    private boolean macroMoves;
+    private PatternDatabase deadFilter;
+    private final long[] mirrored = new long[PackedBoard.NUM_TYPES];
     private static final char[] DIRS = {'u','d','l','r'};
     private static final int ROOT_PARENT = -1;
     private static final int ROOT_MOVE = -1;
 
-    private final int a22Count;
-    private final int a21Count;
-    private final int a12Count;
-    private final int a11Count;
-
     public BFS(Board board) {
-        visited = new Visited(200_000);
-        this.goalSquare = board.getGoalSquare();
-
-        int a22Count = 0;
-        int a21Count = 0;
-        int a12Count = 0;
-        int a11Count = 0;
-        for (Piece piece : board.getPieces()) {
-            switch (piece.getType()) {
-                case Piece.TWO_BY_TWO:
-                    a22Count++;
-                    break;
-                case Piece.TWO_BY_ONE:
-                    a21Count++;
-                    break;
-                case Piece.ONE_BY_TWO:
-                    a12Count++;
-                    break;
-                case Piece.ONE_BY_ONE:
-                    a11Count++;
-                    break;
+        this(board, new SolverOptions());
+    }
+
+    public BFS(Board board, SolverOptions options) {
+        packed = new PackedBoard(board);
+        codec = new StateCodec(packed);
+        this.options = options;
+        visited = options.createVisitedStore(codec.fitsInLong() ? 1 : 2);
+    }
+
+    public VisitedStore getVisited() {
+        return visited;
+    }
+
+    @Override
+    public void close() {
+        visited.close();
+    }
+
+    public ArrayList<Move> solve(Board start) {
+        PatternDatabase patterns = options.patternDatabase;
+        if (patterns != null) {
+            if (!patterns.matches(packed)) throw new IllegalArgumentException("Pattern database is for a different puzzle");
+            long[] state = new long[PackedBoard.NUM_TYPES];
+            packed.load(start, state);
+            if (patterns.isDead(state)) return null; // No solvable state looks like this
+        }
+
+        deadFilter = patterns;
+        try {
+            // The backward search has neither macro moves nor mirroring, so those stay forward
+            if (options.bidirectional && codec.fitsInLong() && !options.macroMoves && !options.mirrorSymmetry) {
+                VisitedStore goals = seedGoalStates();
+                if (goals != null) {
+                    try {
+                        return solveBidirectional(start, goals);
+                    }
+                    finally {
+                        goals.close();
+                    }
+                }
             }
+
+            mirrorStates = options.mirrorSymmetry && codec.fitsInLong() && packed.isMirrorSymmetric();
+            macroMoves = options.macroMoves;
+            int goalId = search(start, true);
+            if (goalId < 0) return null; // no solution
+            return mirrorStates || macroMoves ? replayMoves(start, goalId) : reconstructMoves(goalId);
+        }
+        finally {
+            mirrorStates = false;
+            macroMoves = false;
+            deadFilter = null;
         }
-        this.a22Count = a22Count;
-        this.a21Count = a21Count;
-        this.a12Count = a12Count;
-        this.a11Count = a11Count;
     }
 
-    private boolean isGoal(Board board) {
-        for (Piece p : board.getPieces()) {
-            if (p.getType() == Piece.TWO_BY_TWO) {
-                return p.getTopLeft() == goalSquare;
+    /**
+     * Graph-builder mode: visits the whole component reachable from start without stopping at
+     * goals, leaving every state in getVisited() in BFS order. Returns the start's eccentricity,
+     * i.e. the depth of the last layer.
+     */
+    public int exploreAll(Board start) {
+        search(start, false);
+        return lastDepth;
+    }
+
+    private int search(Board start, boolean stopAtGoal) {
+        SolverMonitor monitor = new SolverMonitor(options, visited);
+        try {
+            return search(start, stopAtGoal, monitor);
+        }
+        finally {
+            monitor.finish();
+        }
+    }
+
+    private int search(Board start, boolean stopAtGoal, SolverMonitor monitor) {
+        long[] cur = new long[PackedBoard.NUM_TYPES];
+        long[] wideCode = new long[2];
+        int[] macros = macroMoves ? new int[packed.maxMacroMoves()] : null;
+        packed.load(start, cur);
+        int startId = add(cur, wideCode, ROOT_PARENT, ROOT_MOVE);
+        lastDepth = 0;
+        int layerEnd = visited.nextId();
+        monitor.startLayer(0, layerEnd - startId);
+
+        // Ids are handed out in BFS order, so the queue is just the id range not yet expanded
+        for (int curId = startId; curId < visited.nextId(); curId++) {
+            if (curId == layerEnd) {
+                monitor.endLayer();
+                lastDepth++;
+                layerEnd = visited.nextId();
+                monitor.startLayer(lastDepth, layerEnd - curId);
+            }
+            monitor.expand();
+            if (visited.getKeyWords() == 1) codec.decode(visited.getCode(curId), cur);
+            else codec.decodeWide(visited.getCode(curId), visited.getCodeHi(curId), cur);
+
+            if (stopAtGoal && packed.isGoal(cur)) return curId;
+            if (macroMoves) {
+                int n = packed.macroMoves(cur, macros);
+                for (int i = 0; i < n; i++) {
+                    int type = macros[i] & 3;
+                    long saved = cur[type];
+                    packed.applyMacroMove(cur, macros[i]);
+                    if (deadFilter == null || !deadFilter.isDead(cur)) add(cur, wideCode, curId, macros[i]);
+                    cur[type] = saved;
+                }
+                continue;
+            }
+            // Every legal slide of a type in one direction comes out of one mask computation
+            long empty = packed.emptyCells(cur);
+            for (int type = 0; type < PackedBoard.NUM_TYPES; type++) {
+                long saved = cur[type];
+                for (int d = 0; d < DIRS.length; d++) {
+                    int delta = packed.topLeftDelta(d);
+                    for (long rest = packed.slidable(cur, empty, type, d); rest != 0; rest &= rest - 1) {
+                        int fromTopLeft = Long.numberOfTrailingZeros(rest);
+                        cur[type] = saved ^ (1L << fromTopLeft) ^ (1L << (fromTopLeft + delta));
+                        if (deadFilter == null || !deadFilter.isDead(cur)) add(cur, wideCode, curId, packMove(type, fromTopLeft, d));
+                    }
+                    cur[type] = saved;
+                }
             }
         }
-        throw new IllegalStateException("No 2x2 piece found.");
+        monitor.endLayer();
+        return -1;
     }
 
-    public ArrayList<Move> solve(Board start) {
-        ArrayDeque<Node> q = new ArrayDeque<>();
-
-        BoardState startState = new BoardState(start, a22Count, a21Count, a12Count, a11Count);
-        int startId = visited.addIfAbsent(startState, ROOT_PARENT, ROOT_MOVE);
-
-        q.addLast(new Node(start, startId));
-
-        int numCombsChecked = 0;
-        while (!q.isEmpty()) {
-            numCombsChecked++;
-            if (numCombsChecked % 50_000 == 0) {
-                System.out.println("Num combs checked: " + (numCombsChecked / 1000) + ",000");
-                System.out.println("Current visited size: " + visited.size);
-                System.out.println("Total memory: " + Runtime.getRuntime().totalMemory());
-                System.out.println("Free memory: " + Runtime.getRuntime().freeMemory());
-                System.out.println("Max memory: " + Runtime.getRuntime().maxMemory());
-                System.out.println("~~~~~~~~~~~~");
+    private int add(long[] state, long[] wideCode, int parent, int moveCode) {
+        if (mirrorStates) return visited.addIfAbsent(canonicalCode(state), parent, moveCode);
+        if (visited.getKeyWords() == 1) return visited.addIfAbsent(codec.encode(state), parent, moveCode);
+        codec.encodeWide(state, wideCode);
+        return visited.addIfAbsent(wideCode[0], wideCode[1], parent, moveCode);
+    }
+
+    /** The smaller code of state and its mirror, so both map to one visited entry. */
+    private long canonicalCode(long[] state) {
+        packed.mirror(state, mirrored);
+        return Math.min(codec.encode(state), codec.encode(mirrored));
+    }
+
+    /**
+     * Rebuilds the path by replaying it forward from the real start, for when the stored
+     * moves cannot simply be unpacked. Under mirrorSymmetry each stored move was made from
+     * the stored parent and may have led to the mirror of the stored child, so the replay
+     * mirrors the move whenever the real position is the mirror of the stored one. Macro
+     * moves get their step-by-step path from the real position they start in.
+     */
+    private ArrayList<Move> replayMoves(Board start, int goalId) {
+        ArrayList<Integer> chain = new ArrayList<>();
+        for (int id = goalId; id != ROOT_PARENT; id = visited.getParentById(id)) chain.add(id);
+        Collections.reverse(chain);
+
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(start, state);
+        boolean flipped = mirrorStates && canonicalCode(state) != codec.encode(state);
+        ArrayList<Move> moves = new ArrayList<>();
+        for (int i = 1; i < chain.size(); i++) {
+            int id = chain.get(i);
+            int moveCode = visited.getMoveCodeById(id);
+            if (macroMoves) {
+                if (flipped) moveCode = packed.mirrorMacroMove(moveCode);
+                moves.add(new Move(moveCode & 3, PackedBoard.macroFrom(moveCode), packed.macroPath(state, moveCode)));
+                packed.applyMacroMove(state, moveCode);
+            }
+            else {
+                if (flipped) moveCode = packed.mirrorMove(moveCode);
+                moves.add(unpackMove(moveCode));
+                packed.applyMove(state, moveCode);
             }
-            Node cur = q.removeFirst();
-            if (isGoal(cur.board)) return reconstructMoves(cur.id);
-            ArrayList<Piece> curPieces = cur.board.getPieces();
-            for (int i = 0; i < curPieces.size(); i++) {
-                Piece p = curPieces.get(i);
-                int type = p.getType();
-                int fromTopLeft = p.getTopLeft();
-                for (char dir : DIRS) {
-                    Board next = new Board(cur.board);
-                    Piece moved = next.getPieces().get(i);
-                    if (!next.movePiece(moved, dir)) continue;
-                    BoardState nextState = new BoardState(next, a22Count, a21Count, a12Count, a11Count);
-                    int moveCode = packMove(type, fromTopLeft, dir);
-                    int nextId = visited.addIfAbsent(nextState, cur.id, moveCode);
-                    if (nextId >= 0) {
-                        q.addLast(new Node(next, nextId));
+            if (mirrorStates) flipped = codec.encode(state) != visited.getCode(id);
+        }
+        return moves;
+    }
+
+    /** Every goal placement as a root of a backward search, or null if there are too many. */
+    private VisitedStore seedGoalStates() {
+        VisitedStore goals = options.createVisitedStore(1);
+        boolean complete = packed.forEachGoalState(state -> {
+            if (goals.size() >= options.maxGoalStates) return false;
+            goals.addIfAbsent(codec.encode(state), ROOT_PARENT, ROOT_MOVE);
+            return true;
+        });
+        if (complete) return goals;
+        goals.close();
+        return null;
+    }
+
+    /**
+     * Level-synchronous search from both ends. Each round expands one whole layer of the
+     * side with the smaller frontier, and every new state is looked up on the other side.
+     * Finishing the layer and keeping the shortest meeting keeps the result optimal.
+     */
+    private ArrayList<Move> solveBidirectional(Board start, VisitedStore goals) {
+        SolverMonitor monitor = new SolverMonitor(options, visited);
+        try {
+            return solveBidirectional(start, goals, monitor);
+        }
+        finally {
+            monitor.finish();
+        }
+    }
+
+    private ArrayList<Move> solveBidirectional(Board start, VisitedStore goals, SolverMonitor monitor) {
+        long[] cur = new long[PackedBoard.NUM_TYPES];
+        packed.load(start, cur);
+        int startId = visited.addIfAbsent(codec.encode(cur), ROOT_PARENT, ROOT_MOVE);
+        if (packed.isGoal(cur)) return new ArrayList<>();
+
+        VisitedStore[] sides = {visited, goals};
+        int[][] layerStarts = {{startId, visited.nextId()}, {1, goals.nextId()}};
+        int[] numLayers = {1, 1}; // layerStarts[side][numLayers] is the end of the frontier
+
+        long[] next = new long[PackedBoard.NUM_TYPES];
+        long[] codes = new long[packed.maxSuccessors()];
+        int[] moves = new int[packed.maxSuccessors()];
+
+        while (true) {
+            int fwdSize = layerStarts[0][numLayers[0]] - layerStarts[0][numLayers[0] - 1];
+            int backSize = layerStarts[1][numLayers[1]] - layerStarts[1][numLayers[1] - 1];
+            if (fwdSize == 0 || backSize == 0) return null;
+
+            int side = fwdSize <= backSize ? 0 : 1;
+            VisitedStore mine = sides[side];
+            VisitedStore other = sides[1 - side];
+            int depth = numLayers[side]; // Depth of the states this layer produces
+
+            int bestLength = Integer.MAX_VALUE;
+            int bestMine = -1;
+            int bestOther = -1;
+            int from = layerStarts[side][numLayers[side] - 1];
+            int to = layerStarts[side][numLayers[side]];
+            monitor.startLayer(depth - 1, to - from);
+            for (int id = from; id < to; id++) {
+                monitor.expand();
+                codec.decode(mine.getCode(id), cur);
+                int n = packed.successors(cur, codec, codes, moves);
+                for (int i = 0; i < n; i++) {
+                    // Everything the backward side reaches can reach a goal, so only forward states are filtered
+                    if (side == 0 && deadFilter != null) {
+                        codec.decode(codes[i], next);
+                        if (deadFilter.isDead(next)) continue;
                     }
+                    int nextId = mine.addIfAbsent(codes[i], id, moves[i]);
+                    if (nextId < 0) continue;
+                    int otherId = other.find(codes[i]);
+                    if (otherId < 0) continue;
+                    int length = depth + depthOf(otherId, layerStarts[1 - side], numLayers[1 - side]);
+                    if (length < bestLength) {
+                        bestLength = length;
+                        bestMine = nextId;
+                        bestOther = otherId;
+                    }
+                }
+            }
+
+            if (numLayers[side] + 1 == layerStarts[side].length) {
+                layerStarts[side] = Arrays.copyOf(layerStarts[side], layerStarts[side].length * 2);
+            }
+            layerStarts[side][++numLayers[side]] = mine.nextId();
+            monitor.endLayer();
+
+            if (bestMine >= 0) {
+                int fwdId = side == 0 ? bestMine : bestOther;
+                int backId = side == 0 ? bestOther : bestMine;
+                ArrayList<Move> moveList = reconstructMoves(visited, fwdId);
+                // Walk the backward tree towards its goal root, undoing each move it recorded
+                for (int id = backId; goals.getMoveCodeById(id) != ROOT_MOVE; id = goals.getParentById(id)) {
+                    moveList.add(invertMove(goals.getMoveCodeById(id)));
                 }
+                return moveList;
             }
         }
-        return null; // no solution
+    }
+
+    private static int depthOf(int id, int[] layerStarts, int numLayers) {
+        int depth = 0;
+        while (depth + 1 < numLayers && layerStarts[depth + 1] <= id) depth++;
+        return depth;
+    }
+
+    /** The move that undoes code: the same piece, from where it landed, in the opposite direction. */
+    private Move invertMove(int code) {
+        return unpackMove(invertMoveCode(code, packed));
+    }
+
+    static int invertMoveCode(int code, PackedBoard packed) {
+        int d = (code >>> 2) & 3;
+        return packMove(code & 3, (code >>> 4) + packed.topLeftDelta(d), d ^ 1);
     }
 
     private ArrayList<Move> reconstructMoves(int goalId) {
+        return reconstructMoves(visited, goalId);
+    }
+
+    static ArrayList<Move> reconstructMoves(VisitedStore store, int goalId) {
         ArrayList<Move> reversed = new ArrayList<Move>();
         int id = goalId;
         while (id != ROOT_PARENT) {
-            int code = visited.getMoveCodeById(id);
+            int code = store.getMoveCodeById(id);
             if (code == ROOT_MOVE) break;
             reversed.add(unpackMove(code));
-            id = visited.getParentById(id);
+            id = store.getParentById(id);
         }
 
         Collections.reverse(reversed);
         return reversed;
     }
 
-    private static int packMove(int type, int fromTopLeft, char dir) {
-        int d = switch (dir) {
-            case 'u' -> 0;
-            case 'd' -> 1;
-            case 'l' -> 2;
-            case 'r' -> 3;
-            default -> throw new IllegalArgumentException("Bad dir: " + dir);
-        };
-        return (type & 3) | ((d & 3) << 2) | (fromTopLeft << 4);
+    static int packMove(int type, int fromTopLeft, int dir) {
+        return (type & 3) | ((dir & 3) << 2) | (fromTopLeft << 4);
     }
 
-    private static Move unpackMove(int code) {
+    static Move unpackMove(int code) {
         int type = code & 3;
         int d = (code >>> 2) & 3;
         int fromTopLeft = code >>> 4;
@@ -135,190 +345,22 @@ public class BFS {
         return new Move(type, fromTopLeft, dir);
     }
 
-    public static final class BoardState {
-        private final int[] a22;
-        private final int[] a21;
-        private final int[] a12;
-        private final int[] a11;
-
-        BoardState(Board board, int a22Count, int a21Count, int a12Count, int a11Count) {
-            int[] t22 = new int[a22Count];
-            int[] t21 = new int[a21Count];
-            int[] t12 = new int[a12Count];
-            int[] t11 = new int[a11Count];
-
-            int i22 = 0;
-            int i21 = 0;
-            int i12 = 0;
-            int i11 = 0;
-            for (Piece piece : board.getPieces()) {
-                int topLeft = piece.getTopLeft();
-                switch (piece.getType()) {
-                    case Piece.TWO_BY_TWO -> t22[i22++] = topLeft;
-                    case Piece.TWO_BY_ONE -> t21[i21++] = topLeft;
-                    case Piece.ONE_BY_TWO -> t12[i12++] = topLeft;
-                    case Piece.ONE_BY_ONE -> t11[i11++] = topLeft;
-                    default -> throw new IllegalStateException("Unknown piece type");
-                }
-            }
-
-            Arrays.sort(t22);
-            Arrays.sort(t21);
-            Arrays.sort(t12);
-            Arrays.sort(t11);
-
-            this.a22 = t22;
-            this.a21 = t21;
-            this.a12 = t12;
-            this.a11 = t11;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof BoardState other)) return false;
-            return (Arrays.equals(a22, other.a22)
-                    && Arrays.equals(a21, other.a21)
-                    && Arrays.equals(a12, other.a12)
-                    && Arrays.equals(a11, other.a11));
-        }
-
-        @Override
-        public int hashCode() {
-            int h = 1;
-            h = 31 * h + Arrays.hashCode(a22);
-            h = 31 * h + Arrays.hashCode(a21);
-            h = 31 * h + Arrays.hashCode(a12);
-            h = 31 * h + Arrays.hashCode(a11);
-            return h;
-        }
-    }
-
+    /** One move of one piece: a single step in dir, or with macroMoves a path of steps starting with dir. */
     public static final class Move {
         public final int type;
         public final int fromTopLeft;
         public final char dir;
+        public final char[] path;
 
         public Move(int type, int fromTopLeft, char dir) {
-            this.type = type;
-            this.fromTopLeft = fromTopLeft;
-            this.dir = dir;
-        }
-    }
-
-    public static final class Node {
-        final Board board;
-        final int id;
-
-        Node(Board board, int id) {
-            this.board = board;
-            this.id = id;
+            this(type, fromTopLeft, new char[] {dir});
         }
-    }
-
-    public static final class Visited {
-        private BoardState[] keys;
-        private int[] idAtSlot;
-        private int[] parentById;    // indexed by stable id
-        private int[] moveById;      // indexed by stable id
-        private int nextId;
-        private int size;
-        private int resizeAt;
-
-        public Visited(int expectedSize) {
-            int cap = 1;
-            while (cap < (expectedSize * 10) / 7) cap <<= 1; // Load factor 0.7
-            keys = new BoardState[cap];
-            idAtSlot = new int[cap];
-            resizeAt = (cap * 7) / 10;
-
-            int idCap = Math.max(16, expectedSize + 1);
-            parentById = new int[idCap];
-            moveById = new int[idCap];
-
-            nextId = 1;
-        }
-
-        public int addIfAbsent(BoardState key, int parentSlot, int moveCode) {
-            if (size >= resizeAt) rehash();
-
-            int mask = keys.length - 1;
-            int idx = mix32(key.hashCode()) & mask;
-
-            while (true) {
-                BoardState cur = keys[idx];
-                if (cur == null) {
-                    int id = nextId++;
-                    ensureIdCapacity(id);
 
-                    keys[idx] = key;
-                    idAtSlot[idx] = id;
-
-                    parentById[id] = parentSlot;
-                    moveById[id] = moveCode;
-
-                    size++;
-                    return id;
-                }
-                if (cur.equals(key)) {
-                    return -1;
-                }
-                idx = (idx + 1) & mask;
-            }
-        }
-
-        public int getParentById(int id) {
-            return parentById[id];
-        }
-
-        public int getMoveCodeById(int id) {
-            return moveById[id];
-        }
-
-        private void ensureIdCapacity(int id) {
-            if (id < parentById.length) return;
-
-            int newCap = parentById.length;
-            while (newCap <= id) newCap <<= 1;
-
-            parentById = Arrays.copyOf(parentById, newCap);
-            moveById = Arrays.copyOf(moveById, newCap);
-        }
-
-        private void rehash() {
-            BoardState[] oldKeys = keys;
-            int[] oldIdAtSlot = idAtSlot;
-
-            int newCap = oldKeys.length << 1;
-            keys = new BoardState[newCap];
-            idAtSlot = new int[newCap];
-
-            size = 0;
-            resizeAt = (keys.length * 7) / 10;
-            int mask = newCap - 1;
-
-            for (int i = 0; i < oldKeys.length; i++) {
-                BoardState k = oldKeys[i];
-                if (k == null) continue;
-
-                int id = oldIdAtSlot[i];
-
-                int idx = mix32(k.hashCode()) & mask;
-                while (keys[idx] != null) idx = (idx + 1) & mask;
-
-                keys[idx] = k;
-                idAtSlot[idx] = id;
-                size++;
-            }
-        }
-
-        private static int mix32(int h) {
-            h ^= (h >>> 16);
-            h *= 0x7feb352d;
-            h ^= (h >>> 15);
-            h *= 0x846ca68b;
-            h ^= (h >>> 16);
-            return h;
+        public Move(int type, int fromTopLeft, char[] path) {
+            this.type = type;
+            this.fromTopLeft = fromTopLeft;
+            this.dir = path[0];
+            this.path = path;
         }
     }
-}
\ No newline at end of file
+}
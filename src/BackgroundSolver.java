@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs solves on a dedicated daemon thread so the Swing event thread stays responsive.
+ *
+ * solve() snapshots the board and returns at once; the future completes with the moves,
+ * with null if there is no solution, or exceptionally with CancellationException once
+ * options.cancellation is set. Solves queue up on the single thread, so a new solve
+ * starts only after the previous one has stopped.
+ */
+public final class BackgroundSolver {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "klotski-solver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final SolveCache cache = new SolveCache();
+
+    /** Solves through a SolveCache, so asking again after a few hand moves is usually a lookup. */
+    public CompletableFuture<ArrayList<BFS.Move>> solve(Board board, SolverOptions options) {
+        Board start = new Board(board);
+        return CompletableFuture.supplyAsync(() -> {
+            if (start.isWide()) return new WideBFS(options).solve(start);
+            return cache.solve(start, options);
+        }, executor);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Forwards callbacks to listener on the event thread. Progress updates that arrive
+     * while one is still queued replace it, so a fast solver cannot flood the queue.
+     */
+    public static SolverListener onEventThread(SolverListener listener) {
+        AtomicReference<SolverStats> latest = new AtomicReference<>();
+        return new SolverListener() {
+            @Override
+            public void onProgress(SolverStats stats) {
+                if (latest.getAndSet(stats) == null) {
+                    SwingUtilities.invokeLater(() -> listener.onProgress(latest.getAndSet(null)));
+                }
+            }
+
+            @Override
+            public void onLayer(SolverStats stats) {
+                SwingUtilities.invokeLater(() -> listener.onLayer(stats));
+            }
+
+            @Override
+            public void onFinish(SolverStats stats) {
+                SwingUtilities.invokeLater(() -> listener.onFinish(stats));
+            }
+        };
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless batch mode: solves one puzzle per input line (see PuzzleFormat) on a bounded
+ * worker pool and writes one JSON result per line as each solve finishes.
+ *
+ * <pre>
+ *   java BatchSolver [--threads N] [--out results.jsonl] [--macro] [--mirror] [--external | --parallel] [file ...]
+ * </pre>
+ * With no files, or "-", puzzles are read from stdin. Blank lines and lines starting
+ * with '#' are skipped. Input is read only as fast as workers free up, and results are
+ * flushed as they are written, so neither side is ever held in memory. Results come out
+ * in completion order; "index" gives the input order. --external solves with
+ * ExternalBFS, keeping the visited set on disk. --parallel solves with ParallelBFS,
+ * splitting the machine's cores between the N puzzles in flight, so a few large puzzles
+ * still use every core.
+ */
+public final class BatchSolver {
+    private static final String USAGE =
+            "Usage: BatchSolver [--threads N] [--out results.jsonl] [--macro] [--mirror]"
+                    + " [--external | --parallel] [file ...]";
+
+    private final ExecutorService pool;
+    private final Semaphore inFlight;
+    private final PrintWriter out;
+    private final boolean macroMoves;
+    private final boolean mirrorSymmetry;
+    private final boolean external;
+    private final int solveThreads; // ParallelBFS workers per puzzle, or 0 to solve each on one thread
+    private final AtomicInteger solved = new AtomicInteger();
+    private final AtomicInteger unsolvable = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private int nextIndex;
+
+    public BatchSolver(int threads, Writer out, boolean macroMoves, boolean mirrorSymmetry) {
+        this(threads, out, macroMoves, mirrorSymmetry, false);
+    }
+
+    public BatchSolver(int threads, Writer out, boolean macroMoves, boolean mirrorSymmetry, boolean external) {
+        this(threads, out, macroMoves, mirrorSymmetry, external, false);
+    }
+
+    public BatchSolver(int threads, Writer out, boolean macroMoves, boolean mirrorSymmetry, boolean external,
+                       boolean parallel) {
+        if (parallel && (macroMoves || mirrorSymmetry || external)) {
+            throw new IllegalArgumentException("--parallel cannot be combined with --macro, --mirror or --external");
+        }
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "klotski-batch");
+            t.setDaemon(true);
+            return t;
+        });
+        // Twice the workers keeps them busy without reading far ahead of them
+        inFlight = new Semaphore(2 * threads);
+        this.out = new PrintWriter(out);
+        this.macroMoves = macroMoves;
+        this.mirrorSymmetry = mirrorSymmetry;
+        this.external = external;
+        solveThreads = parallel ? Math.max(1, Runtime.getRuntime().availableProcessors() / threads) : 0;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path outFile = null;
+        boolean macro = false;
+        boolean mirror = false;
+        boolean external = false;
+        boolean parallel = false;
+        ArrayList<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--out" -> outFile = Path.of(args[++i]);
+                case "--macro" -> macro = true;
+                case "--mirror" -> mirror = true;
+                case "--external" -> external = true;
+                case "--parallel" -> parallel = true;
+                default -> {
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + args[i] + "\n" + USAGE);
+                    }
+                    inputs.add(args[i]);
+                }
+            }
+        }
+        if (inputs.isEmpty()) inputs.add("-");
+
+        Writer writer = outFile == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(outFile, StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        BatchSolver batch = new BatchSolver(Math.max(1, threads), new BufferedWriter(writer),
+                macro, mirror, external, parallel);
+        for (String input : inputs) {
+            if (input.equals("-")) {
+                batch.submitAll(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), "stdin");
+            }
+            else {
+                try (BufferedReader reader = Files.newBufferedReader(Path.of(input), StandardCharsets.UTF_8)) {
+                    batch.submitAll(reader, input);
+                }
+            }
+        }
+        batch.finish();
+        if (outFile != null) writer.close();
+        System.err.printf("%d solved, %d unsolvable, %d failed in %.1f s%n",
+                batch.solved.get(), batch.unsolvable.get(), batch.failed.get(), (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Reads puzzles from reader, blocking while the pool is full. */
+    public void submitAll(BufferedReader reader, String source) throws IOException, InterruptedException {
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+            inFlight.acquire();
+            int index = nextIndex++;
+            String where = source + ":" + lineNumber;
+            pool.execute(() -> {
+                try {
+                    write(solve(index, where, trimmed));
+                }
+                finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    /** Waits for every submitted puzzle and flushes the output. */
+    public void finish() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        out.flush();
+    }
+
+    private String solve(int index, String where, String line) {
+        StringBuilder json = new StringBuilder("{\"index\":").append(index);
+        json.append(",\"source\":").append(PuzzleFormat.quote(where));
+        try {
+            PuzzleFormat.Puzzle puzzle = PuzzleFormat.parse(line);
+            Board board = puzzle.board;
+            if (puzzle.name != null) json.append(",\"name\":").append(PuzzleFormat.quote(puzzle.name));
+            json.append(",\"rows\":").append(board.getNumRows()).append(",\"cols\":").append(board.getNumCols());
+
+            long started = System.nanoTime();
+            ArrayList<BFS.Move> moves;
+            long states;
+            double bytesPerState;
+            if (board.isWide()) {
+                WideBFS bfs = new WideBFS();
+                moves = bfs.solve(board);
+                states = bfs.size();
+                bytesPerState = Double.NaN;
+            }
+            else if (external) {
+                try (ExternalBFS bfs = new ExternalBFS(board)) {
+                    moves = bfs.solve(new Board(board));
+                    states = bfs.size();
+                }
+                bytesPerState = Double.NaN;
+            }
+            else if (solveThreads > 0) {
+                SolverOptions options = new SolverOptions();
+                options.threads = solveThreads;
+                ParallelBFS bfs = new ParallelBFS(board, options);
+                moves = bfs.solve(new Board(board));
+                states = bfs.getVisited().size();
+                bytesPerState = Double.NaN;
+            }
+            else {
+                SolverOptions options = new SolverOptions();
+                options.macroMoves = macroMoves;
+                options.mirrorSymmetry = mirrorSymmetry;
+                try (BFS bfs = new BFS(board, options)) {
+                    moves = bfs.solve(new Board(board));
+                    states = bfs.getVisited().size();
+                    bytesPerState = bfs.getVisited().bytesPerState();
+                }
+            }
+            long millis = (System.nanoTime() - started) / 1_000_000;
+
+            json.append(",\"solved\":").append(moves != null);
+            if (moves != null) {
+                int steps = 0;
+                for (BFS.Move move : moves) steps += move.path.length;
+                json.append(",\"moves\":").append(moves.size()).append(",\"steps\":").append(steps);
+                solved.incrementAndGet();
+            }
+            else {
+                unsolvable.incrementAndGet();
+            }
+            json.append(",\"states\":").append(states);
+            json.append(",\"millis\":").append(millis);
+            if (!Double.isNaN(bytesPerState)) json.append(",\"visitedBytes\":").append((long) (states * bytesPerState));
+        }
+        catch (RuntimeException | OutOfMemoryError e) {
+            failed.incrementAndGet();
+            json.append(",\"error\":").append(PuzzleFormat.quote(String.valueOf(e)));
+        }
+        return json.append('}').toString();
+    }
+
+    private synchronized void write(String line) {
+        out.println(line);
+        out.flush();
+    }
+}
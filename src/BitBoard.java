@@ -0,0 +1,98 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable set of cells on a rows x cols board, numbered like Board's bitboards
+ * (cell 0 is bottom-right, the top-left cell is rows * cols - 1).
+ *
+ * Boards of up to 64 cells get LongBitBoard, a single long; anything larger gets
+ * WideBitBoard, backed by a long[]. Directions are the PackedBoard constants, and
+ * shift drops cells that would leave the board instead of wrapping them into the
+ * neighbouring row.
+ */
+public abstract class BitBoard {
+    private static final ConcurrentHashMap<Integer, long[][]> EDGES = new ConcurrentHashMap<>();
+
+    protected final int rows;
+    protected final int cols;
+
+    protected BitBoard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public static BitBoard empty(int rows, int cols) {
+        if (rows * cols <= 64) return new LongBitBoard(rows, cols, 0L);
+        return new WideBitBoard(rows, cols, new long[wordsFor(rows * cols)]);
+    }
+
+    public static BitBoard ofCell(int rows, int cols, int cell) {
+        return empty(rows, cols).with(cell);
+    }
+
+    static int wordsFor(int cells) {
+        return (cells + 63) >>> 6;
+    }
+
+    /**
+     * Edge masks for a geometry as words, indexed by direction: the cells that cannot move
+     * up, down, left or right. Index 4 holds the whole board.
+     */
+    static long[][] edges(int rows, int cols) {
+        return EDGES.computeIfAbsent(rows * 65536 + cols, k -> {
+            int cells = rows * cols;
+            long[][] edges = new long[5][wordsFor(cells)];
+            for (int r = 0; r < rows; r++) {
+                setBit(edges[PackedBoard.LEFT], r * cols + cols - 1);
+                setBit(edges[PackedBoard.RIGHT], r * cols);
+            }
+            for (int c = 0; c < cols; c++) {
+                setBit(edges[PackedBoard.UP], (rows - 1) * cols + c);
+                setBit(edges[PackedBoard.DOWN], c);
+            }
+            for (int cell = 0; cell < cells; cell++) setBit(edges[4], cell);
+            return edges;
+        });
+    }
+
+    private static void setBit(long[] words, int cell) {
+        words[cell >>> 6] |= 1L << cell;
+    }
+
+    public int getNumRows() {
+        return rows;
+    }
+
+    public int getNumCols() {
+        return cols;
+    }
+
+    public abstract boolean get(int cell);
+
+    public abstract BitBoard with(int cell);
+
+    public abstract BitBoard or(BitBoard other);
+
+    public abstract BitBoard and(BitBoard other);
+
+    public abstract BitBoard andNot(BitBoard other);
+
+    public abstract BitBoard xor(BitBoard other);
+
+    public abstract boolean intersects(BitBoard other);
+
+    public abstract boolean isEmpty();
+
+    public abstract int cardinality();
+
+    /** The cells moved one step in dir; cells that would leave the board are dropped. */
+    public abstract BitBoard shift(int dir);
+
+    /** True if any cell is on the edge facing dir, i.e. shift(dir) would lose it. */
+    public abstract boolean isTouching(int dir);
+
+    /** The cells as a single long. Only valid for boards of up to 64 cells. */
+    public abstract long toLong();
+
+    /** Highest-numbered cell, which for a piece is its top-left; -1 if empty. */
+    public abstract int highestCell();
+}
@@ -1,7 +1,8 @@
 import java.util.ArrayList;
 
 public class Board {
-    private long bitboard;
+    private BitBoard bitboard; // On boards of up to 64 cells, built from occupancy when asked for
+    private long occupancy;    // The occupied cells when !isWide(), updated in place by movePiece
     private final ArrayList<Piece> pieces;
 
     public int NUM_ROWS;
@@ -14,9 +15,10 @@ public class Board {
     public long LAST_ROW_MASK;
 
     private int goalSquare;
+    private MoveTable moveTable;
 
     public Board() {
-        bitboard = 0;
+        bitboard = BitBoard.empty(5, 4);
         NUM_ROWS = 5;
         NUM_COLS = 4;
         FIRST_COL_MASK = 0b1000_1000_1000_1000_1000;
@@ -27,30 +29,34 @@ public class Board {
     }
 
     public Board(int rows, int cols) {
-        bitboard = 0L;
+        bitboard = BitBoard.empty(rows, cols);
         NUM_ROWS = rows;
         NUM_COLS = cols;
         FIRST_COL_MASK = 0L;
         LAST_COL_MASK = 0L;
-        for (int i = 0; i < NUM_ROWS; i++) {
-            FIRST_COL_MASK <<= NUM_COLS;
-            FIRST_COL_MASK |= 1L << (NUM_COLS - 1);
-            LAST_COL_MASK <<= NUM_COLS;
-            LAST_COL_MASK |= 1L;
+        // The long masks only describe boards of up to 64 cells; larger ones go through BitBoard
+        if (!isWide()) {
+            for (int i = 0; i < NUM_ROWS; i++) {
+                FIRST_COL_MASK <<= NUM_COLS;
+                FIRST_COL_MASK |= 1L << (NUM_COLS - 1);
+                LAST_COL_MASK <<= NUM_COLS;
+                LAST_COL_MASK |= 1L;
+            }
+            FIRST_ROW_MASK = ((1L << NUM_COLS) - 1) << ((NUM_ROWS - 1) * NUM_COLS);
+            LAST_ROW_MASK = (1L << NUM_COLS) - 1;
         }
-        FIRST_ROW_MASK = ((1L << NUM_COLS) - 1) << ((NUM_ROWS - 1) * NUM_COLS);
-        LAST_ROW_MASK = (1L << NUM_COLS) - 1;
 
         pieces = new ArrayList<>();
     }
 
     public Board(Board other) {
-        bitboard = other.getBitboard();
+        bitboard = other.bitboard;
+        occupancy = other.occupancy;
         NUM_ROWS = other.getNumRows();
         NUM_COLS = other.getNumCols();
         pieces = new ArrayList<>();
         for (Piece piece : other.getPieces()) {
-            pieces.add(new Piece(piece));
+            pieces.add(new Piece(piece, this));
         }
         FIRST_COL_MASK = other.FIRST_COL_MASK;
         LAST_COL_MASK = other.LAST_COL_MASK;
@@ -61,7 +67,7 @@ public class Board {
 
     private void clear() {
         pieces.clear();
-        bitboard = 0;
+        setCells(BitBoard.empty(NUM_ROWS, NUM_COLS));
     }
 
     public void initPiecesDonkey() {
@@ -147,10 +153,26 @@ public class Board {
         goalSquare = 6;
     }
 
+    /** Occupancy as a long. Only valid when !isWide(); use getCells() otherwise. */
     public long getBitboard() {
+        return occupancy;
+    }
+
+    public BitBoard getCells() {
+        if (bitboard == null) bitboard = new LongBitBoard(NUM_ROWS, NUM_COLS, occupancy);
         return bitboard;
     }
 
+    private void setCells(BitBoard cells) {
+        bitboard = cells;
+        if (!isWide()) occupancy = cells.toLong();
+    }
+
+    /** True if the board has more than 64 cells, so the long-based fast paths do not apply. */
+    public boolean isWide() {
+        return NUM_ROWS * NUM_COLS > 64;
+    }
+
     public int getNumRows() {
         return NUM_ROWS;
     }
@@ -163,10 +185,14 @@ public class Board {
         return goalSquare;
     }
 
+    public void setGoalSquare(int goalSquare) {
+        this.goalSquare = goalSquare;
+    }
+
     public void addPiece(Piece piece) {
-        if ((piece.getLocation() & bitboard) != 0) throw new IllegalArgumentException("New piece overlaps previous piece.");
+        if (piece.getCells().intersects(getCells())) throw new IllegalArgumentException("New piece overlaps previous piece.");
         pieces.add(piece);
-        bitboard |= piece.getLocation();
+        setCells(getCells().or(piece.getCells()));
     }
 
     public ArrayList<Piece> getPieces() {
@@ -176,66 +202,69 @@ public class Board {
     public boolean movePiece(Piece piece, char dir) {
         // Input validation
         if (!pieces.contains(piece)) return false;
-        if (dir != 'u' && dir != 'd' && dir != 'l' && dir != 'r') return false;
-
-        // Don't move outside board or wrap around
-        if (dir == 'u' && isTouchingTop(piece)) return false;
-        if (dir == 'd' && isTouchingBottom(piece)) return false;
-        if (dir == 'l' && isTouchingLeft(piece)) return false;
-        if (dir == 'r' && isTouchingRight(piece)) return false;
-
-        long oldMask = piece.getLocation();
-        int oldTopLeft = piece.getTopLeft();
-        long newMask;
-        int newTopLeft;
-
-        if (dir == 'u') {
-            newMask = oldMask << NUM_COLS;
-            newTopLeft = oldTopLeft + NUM_COLS;
-        }
-        else if (dir == 'd') {
-            newMask = oldMask >>> NUM_COLS;
-            newTopLeft = oldTopLeft - NUM_COLS;
-        }
-        else if (dir == 'l') {
-            newMask = oldMask << 1;
-            newTopLeft = oldTopLeft + 1;
-        }
-        else {
-            newMask = oldMask >>> 1;
-            newTopLeft = oldTopLeft - 1;
-        }
+        int d = switch (dir) {
+            case 'u' -> PackedBoard.UP;
+            case 'd' -> PackedBoard.DOWN;
+            case 'l' -> PackedBoard.LEFT;
+            case 'r' -> PackedBoard.RIGHT;
+            default -> -1;
+        };
+        if (d < 0) return false;
+
+        if (isWide()) return moveWidePiece(piece, d);
+
+        // Edges, wrap-around and collisions are all one AND against the bitboard
+        MoveTable table = getMoveTable();
+        int entry = table.index(piece.getType(), piece.getTopLeft(), d);
+        if (!table.isLegal(entry, occupancy)) return false;
+
+        // The longs change in place; the BitBoard views are rebuilt only if someone asks
+        piece.move(table.newMask(entry));
+        piece.setTopLeft(table.target(entry));
+        occupancy ^= table.flip(entry);
+        bitboard = null;
+        return true;
+    }
 
-        // If the position would be taken, return false
-        long otherPiecesBoard = bitboard & ~oldMask;
-        if ((newMask & otherPiecesBoard) != 0) return false;
+    private boolean moveWidePiece(Piece piece, int dir) {
+        BitBoard oldCells = piece.getCells();
+        if (oldCells.isTouching(dir)) return false;
+        BitBoard newCells = oldCells.shift(dir);
+        BitBoard otherPieces = bitboard.andNot(oldCells);
+        if (newCells.intersects(otherPieces)) return false;
 
-        piece.move(newMask);
-        piece.setTopLeft(newTopLeft);
-        syncBitboard();
+        piece.move(newCells);
+        piece.setTopLeft(newCells.highestCell());
+        setCells(otherPieces.or(newCells));
         return true;
     }
 
+    public MoveTable getMoveTable() {
+        if (moveTable == null) moveTable = MoveTable.forGeometry(NUM_ROWS, NUM_COLS);
+        return moveTable;
+    }
+
     public boolean isTouchingLeft(Piece piece) {
-        return ((piece.getLocation() & FIRST_COL_MASK) != 0);
+        return piece.getCells().isTouching(PackedBoard.LEFT);
     }
 
     public boolean isTouchingRight(Piece piece) {
-        return ((piece.getLocation() & LAST_COL_MASK) != 0);
+        return piece.getCells().isTouching(PackedBoard.RIGHT);
     }
 
     public boolean isTouchingTop(Piece piece) {
-        return ((piece.getLocation() & FIRST_ROW_MASK) != 0);
+        return piece.getCells().isTouching(PackedBoard.UP);
     }
 
     public boolean isTouchingBottom(Piece piece) {
-        return ((piece.getLocation() & LAST_ROW_MASK) != 0);
+        return piece.getCells().isTouching(PackedBoard.DOWN);
     }
 
     public void syncBitboard() {
-        bitboard = 0;
+        BitBoard cells = BitBoard.empty(NUM_ROWS, NUM_COLS);
         for (Piece piece : pieces) {
-            bitboard |= piece.getLocation();
+            cells = cells.or(piece.getCells());
         }
+        setCells(cells);
     }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets another thread, e.g. the UI, stop a running solve. Solvers poll it every few
+ * thousand states and throw CancellationException once it is set. A token stays
+ * cancelled, so use a fresh one per solve.
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Solve cancelled");
+    }
+}
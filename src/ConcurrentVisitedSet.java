@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free visited set for ParallelBFS, keyed by single-long StateCodec codes.
+ *
+ * Slots are claimed with a CAS on the key, and the move code that reached the state
+ * is stored next to it so a path can be walked back by undoing moves; no parent ids
+ * are needed. The table does not grow while workers are inserting. Instead the caller
+ * hands out headroom() to the workers and resizes between rounds of inserts, so the
+ * load never passes 7/8 and probing always ends.
+ */
+public final class ConcurrentVisitedSet {
+    private static final long EMPTY = 0L; // Keys are stored as code + 1
+    private static final int MAX_LOAD_EIGHTHS = 7;
+
+    private AtomicLongArray keys;
+    private int[] moves;
+    private int size;
+
+    public ConcurrentVisitedSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(long entries) {
+        long needed = (entries * 4) / 3 + 1; // Load factor 0.75
+        if (needed > (1 << 30)) throw new IllegalStateException("Visited set too large: " + entries);
+        int cap = 16;
+        while (cap < needed) cap <<= 1;
+        return cap;
+    }
+
+    private void allocate(int cap) {
+        keys = new AtomicLongArray(cap);
+        moves = new int[cap];
+    }
+
+    /** Adds code unless present. Returns true if this call added it. Safe to call concurrently. */
+    public boolean add(long code, int moveCode) {
+        long key = code + 1;
+        int mask = keys.length() - 1;
+        int idx = VisitedStore.mix(code, 0L) & mask;
+        while (true) {
+            long cur = keys.get(idx);
+            if (cur == EMPTY) {
+                if (keys.compareAndSet(idx, EMPTY, key)) {
+                    moves[idx] = moveCode; // Read only after the layer's workers have been joined
+                    return true;
+                }
+                cur = keys.get(idx);
+            }
+            if (cur == key) return false;
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    /** The move code stored with code, or Integer.MIN_VALUE if it is absent. Not for use during a layer. */
+    public int getMoveCode(long code) {
+        long key = code + 1;
+        int mask = keys.length() - 1;
+        int idx = VisitedStore.mix(code, 0L) & mask;
+        while (true) {
+            long cur = keys.get(idx);
+            if (cur == EMPTY) return Integer.MIN_VALUE;
+            if (cur == key) return moves[idx];
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length();
+    }
+
+    /** Entries that can be added before the load passes 7/8. */
+    public long headroom() {
+        return (long) keys.length() * MAX_LOAD_EIGHTHS / 8 - size;
+    }
+
+    /** Records entries added by a finished round of inserts. */
+    public void addToSize(int added) {
+        size += added;
+    }
+
+    /** Makes room for up to extra more entries. Must not run concurrently with add. */
+    public void ensureRoomFor(long extra) {
+        int cap = capacityFor(size + extra);
+        if (cap <= keys.length()) return;
+
+        AtomicLongArray oldKeys = keys;
+        int[] oldMoves = moves;
+        allocate(cap);
+        int mask = cap - 1;
+        for (int i = 0; i < oldKeys.length(); i++) {
+            long key = oldKeys.get(i);
+            if (key == EMPTY) continue;
+            int idx = VisitedStore.mix(key - 1, 0L) & mask;
+            while (keys.get(idx) != EMPTY) idx = (idx + 1) & mask;
+            keys.set(idx, key);
+            moves[idx] = oldMoves[i];
+        }
+    }
+}
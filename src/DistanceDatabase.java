@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Distance-to-goal for every state in the component reachable from a start layout.
+ *
+ * Built by running BFS in graph-builder mode over the whole component, then a
+ * multi-source BFS from every goal state in it (moves are reversible, so successors
+ * double as predecessors). Distances are a short[] indexed by visited id; -1 marks
+ * states from which no goal is reachable. With that table the optimal next move from
+ * any known state is whichever successor is one step closer, so answering needs at
+ * most maxSuccessors() lookups and no search.
+ *
+ * Holds the BFS's visited store, so close it when done: with offHeapVisited that
+ * releases the spill files.
+ */
+public final class DistanceDatabase implements AutoCloseable {
+    public static final short UNREACHABLE = -1;
+
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final VisitedStore visited;
+    private final short[] distById;
+    private final int startEccentricity;
+    private int maxDistance;
+    private int[] farthestIds;
+    private int diameterLowerBound;
+
+    private DistanceDatabase(PackedBoard packed, StateCodec codec, VisitedStore visited, int startEccentricity) {
+        this.packed = packed;
+        this.codec = codec;
+        this.visited = visited;
+        this.startEccentricity = startEccentricity;
+        distById = new short[visited.nextId()];
+    }
+
+    public static DistanceDatabase build(Board start) {
+        return build(start, new SolverOptions());
+    }
+
+    public static DistanceDatabase build(Board start, SolverOptions options) {
+        PackedBoard packed = new PackedBoard(start);
+        StateCodec codec = new StateCodec(packed);
+        if (!codec.fitsInLong()) throw new IllegalArgumentException("DistanceDatabase needs single-long state codes");
+
+        BFS bfs = new BFS(start, options);
+        try {
+            int eccentricity = bfs.exploreAll(new Board(start));
+            DistanceDatabase db = new DistanceDatabase(packed, codec, bfs.getVisited(), eccentricity);
+            db.computeGoalDistances();
+            db.estimateDiameter();
+            return db;
+        }
+        catch (RuntimeException e) {
+            bfs.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        visited.close();
+    }
+
+    private void computeGoalDistances() {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        int n = visited.nextId();
+        int[] sources = new int[n];
+        int numSources = 0;
+        for (int id = 1; id < n; id++) {
+            codec.decode(visited.getCode(id), state);
+            if (packed.isGoal(state)) sources[numSources++] = id;
+        }
+        int[] dist = bfsFrom(sources, numSources);
+
+        maxDistance = 0;
+        int numFarthest = 0;
+        for (int id = 1; id < n; id++) {
+            int d = dist[id];
+            if (d > Short.MAX_VALUE) throw new IllegalStateException("Distance over " + Short.MAX_VALUE);
+            distById[id] = (short) d;
+            if (d > maxDistance) {
+                maxDistance = d;
+                numFarthest = 0;
+            }
+            if (d == maxDistance && d >= 0) sources[numFarthest++] = id;
+        }
+        distById[0] = UNREACHABLE;
+        farthestIds = Arrays.copyOf(sources, numFarthest);
+    }
+
+    /** Double sweep: the eccentricity of a state farthest from the start is a lower bound on the diameter. */
+    private void estimateDiameter() {
+        int[] fromStart = bfsFrom(new int[] {1}, 1);
+        int far = 1;
+        for (int id = 1; id < fromStart.length; id++) {
+            if (fromStart[id] > fromStart[far]) far = id;
+        }
+        int[] fromFar = bfsFrom(new int[] {far}, 1);
+        diameterLowerBound = 0;
+        for (int id = 1; id < fromFar.length; id++) diameterLowerBound = Math.max(diameterLowerBound, fromFar[id]);
+    }
+
+    /** Plain BFS over visited ids from the given sources; unreached ids get UNREACHABLE. */
+    private int[] bfsFrom(int[] sources, int numSources) {
+        int n = visited.nextId();
+        int[] dist = new int[n];
+        Arrays.fill(dist, UNREACHABLE);
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int i = 0; i < numSources; i++) {
+            dist[sources[i]] = 0;
+            queue[tail++] = sources[i];
+        }
+
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        long[] codes = new long[packed.maxSuccessors()];
+        int[] moves = new int[packed.maxSuccessors()];
+        for (int head = 0; head < tail; head++) {
+            int id = queue[head];
+            codec.decode(visited.getCode(id), state);
+            int count = packed.successors(state, codec, codes, moves);
+            for (int i = 0; i < count; i++) {
+                int next = visited.find(codes[i]);
+                if (next < 0 || dist[next] != UNREACHABLE) continue;
+                dist[next] = dist[id] + 1;
+                queue[tail++] = next;
+            }
+        }
+        return dist;
+    }
+
+    public PackedBoard getPackedBoard() {
+        return packed;
+    }
+
+    public StateCodec getCodec() {
+        return codec;
+    }
+
+    public VisitedStore getVisited() {
+        return visited;
+    }
+
+    /** Number of states in the component. */
+    public int size() {
+        return visited.size();
+    }
+
+    public int distanceById(int id) {
+        return distById[id];
+    }
+
+    /** Moves to the nearest goal, or -1 if the board is outside the component or cannot reach a goal. */
+    public int distance(Board board) {
+        int id = visited.find(codec.encode(board));
+        return id < 0 ? UNREACHABLE : distById[id];
+    }
+
+    public int distance(long code) {
+        int id = visited.find(code);
+        return id < 0 ? UNREACHABLE : distById[id];
+    }
+
+    /** An optimal next move from board, or null if it is solved, unknown or unsolvable. */
+    public BFS.Move bestMove(Board board) {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(board, state);
+        int moveCode = bestMoveCode(state);
+        return moveCode < 0 ? null : BFS.unpackMove(moveCode);
+    }
+
+    /** BFS move code of an optimal next move, or -1. state is left unchanged. */
+    public int bestMoveCode(long[] state) {
+        int d = distance(codec.encode(state));
+        if (d <= 0) return -1;
+        long[] codes = new long[packed.maxSuccessors()];
+        int[] moves = new int[packed.maxSuccessors()];
+        int count = packed.successors(state, codec, codes, moves);
+        for (int i = 0; i < count; i++) {
+            if (distance(codes[i]) == d - 1) return moves[i];
+        }
+        throw new IllegalStateException("No successor one step closer; distance table is inconsistent");
+    }
+
+    /** Follows bestMove from board to a goal; null if there is no known path. */
+    public ArrayList<BFS.Move> solve(Board board) {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(board, state);
+        if (distance(codec.encode(state)) < 0) return null;
+        ArrayList<BFS.Move> moves = new ArrayList<>();
+        int moveCode;
+        while ((moveCode = bestMoveCode(state)) >= 0) {
+            moves.add(BFS.unpackMove(moveCode));
+            packed.applyMove(state, moveCode);
+        }
+        return moves;
+    }
+
+    /** Largest distance to a goal over the component. */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /** Codes of the states at getMaxDistance(). */
+    public long[] getFarthestCodes() {
+        long[] codes = new long[farthestIds.length];
+        for (int i = 0; i < codes.length; i++) codes[i] = visited.getCode(farthestIds[i]);
+        return codes;
+    }
+
+    /** Depth of the last BFS layer from the start layout. */
+    public int getStartEccentricity() {
+        return startEccentricity;
+    }
+
+    /** Double-sweep lower bound on the component's diameter. */
+    public int getDiameterLowerBound() {
+        return diameterLowerBound;
+    }
+}
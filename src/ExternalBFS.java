@@ -0,0 +1,525 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * BFS whose visited set lives on disk, for state spaces that do not fit in memory.
+ *
+ * Each layer is a file of sorted, distinct StateCodec codes, stored as varint deltas in
+ * blocks and decoded lazily while the file streams, with a side file holding the
+ * position of each state's parent in the previous layer, in the same order. Expanding a
+ * layer streams its file and collects (child, parent) pairs in a fixed-size buffer;
+ * every time the buffer fills it is sorted and written out as a run. The runs are then
+ * merged, and since moves are reversible a child can only already be in the current or
+ * the previous layer, so those two files are streamed alongside the merge to drop
+ * repeats. Memory use is the run buffer plus one I/O buffer per open file, however
+ * large the layers get.
+ *
+ * The solution is rebuilt from the goal by scanning each earlier layer's files for the
+ * current state's parent, then finding the move between the two. Files go in
+ * options.spillDir (the default temp directory when null) and are deleted on close.
+ * Needs single-long state codes; mirrorSymmetry and macroMoves do not apply.
+ */
+public class ExternalBFS implements AutoCloseable {
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+    private static final int RUN_BUFFER_BYTES = 1 << 16; // Per run while merging, as there may be many
+    private static final int NUM_IO_BUFFERS = 4; // Files open at once outside the run merge
+    private static final int MAX_FAN_IN = 256;   // Runs merged at once
+    private static final int BLOCK_VALUES = 4096; // Sorted values per delta block
+    private static final int MAX_VARLONG_BYTES = 10;
+
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final SolverOptions options;
+    private final Path dir;
+    private final ArrayList<Path> stateFiles = new ArrayList<>();  // By depth
+    private final ArrayList<Path> parentFiles = new ArrayList<>(); // By depth
+    private final long[] runChildren;
+    private final long[] runParents;
+    // Direct buffers are costly to allocate, so every stream borrows one of these
+    private final ByteBuffer[] io = new ByteBuffer[NUM_IO_BUFFERS];
+    private final ArrayList<ByteBuffer> runBuffers = new ArrayList<>();
+    private long numStates;
+
+    public ExternalBFS(Board board) {
+        this(board, new SolverOptions());
+    }
+
+    public ExternalBFS(Board board, SolverOptions options) {
+        packed = new PackedBoard(board);
+        codec = new StateCodec(packed);
+        if (!codec.fitsInLong()) throw new IllegalArgumentException("ExternalBFS needs single-long state codes");
+        this.options = options;
+        runChildren = new long[options.externalRunStates];
+        runParents = new long[options.externalRunStates];
+        for (int i = 0; i < NUM_IO_BUFFERS; i++) io[i] = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+        try {
+            dir = options.spillDir == null
+                    ? Files.createTempDirectory("klotski-external")
+                    : Files.createTempDirectory(options.spillDir, "klotski-external");
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not create external BFS directory", e);
+        }
+    }
+
+    /** States written over all layers of the last solve. */
+    public long size() {
+        return numStates;
+    }
+
+    /** Bytes on disk for the layers of the last solve. */
+    public long diskBytes() {
+        long total = 0;
+        try {
+            for (Path file : stateFiles) total += Files.size(file);
+            for (Path file : parentFiles) total += Files.size(file);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        deleteLayers();
+        try {
+            Files.deleteIfExists(dir);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not delete " + dir, e);
+        }
+    }
+
+    public ArrayList<BFS.Move> solve(Board start) {
+        SolverMonitor monitor = new SolverMonitor(options, null);
+        try {
+            return solve(start, monitor);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("External BFS failed", e);
+        }
+        finally {
+            monitor.finish();
+        }
+    }
+
+    private ArrayList<BFS.Move> solve(Board start, SolverMonitor monitor) throws IOException {
+        deleteLayers();
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(start, state);
+        try (SortedWriter states = new SortedWriter(new LongWriter(newLayerFile(stateFiles, 0), io[0]));
+             LongWriter parents = new LongWriter(newLayerFile(parentFiles, 0), io[1])) {
+            states.write(codec.encode(state));
+            parents.writeVarLong(0); // Never read: the root has no parent
+        }
+        numStates = 1;
+
+        long[] codes = new long[packed.maxSuccessors()];
+        int[] moves = new int[packed.maxSuccessors()];
+        long frontierSize = 1;
+        for (int depth = 0; frontierSize > 0; depth++) {
+            monitor.startLayer(depth, frontierSize);
+            ArrayList<Path> runs = new ArrayList<>();
+            try {
+                int buffered = 0;
+                long index = 0; // Position in the frontier, which is what children record as their parent
+                try (SortedReader frontier = new SortedReader(new LongReader(stateFiles.get(depth), io[0]), false)) {
+                    while (frontier.hasNext()) {
+                        long code = frontier.next();
+                        monitor.expand();
+                        codec.decode(code, state);
+                        if (packed.isGoal(state)) {
+                            monitor.endLayer();
+                            return reconstructMoves(code, depth, codes, moves);
+                        }
+                        int n = packed.successors(state, codec, codes, moves);
+                        for (int i = 0; i < n; i++) {
+                            if (buffered == runChildren.length) {
+                                runs.add(writeRun(buffered));
+                                buffered = 0;
+                            }
+                            runChildren[buffered] = codes[i];
+                            runParents[buffered] = index;
+                            buffered++;
+                        }
+                        index++;
+                    }
+                }
+                if (buffered > 0) runs.add(writeRun(buffered));
+                frontierSize = mergeRuns(runs, depth);
+            }
+            finally {
+                for (Path run : runs) Files.deleteIfExists(run);
+            }
+            numStates += frontierSize;
+            monitor.setVisitedSize(numStates);
+            monitor.endLayer();
+        }
+        return null; // no solution
+    }
+
+    /** Sorts the buffered pairs by child, keeps one pair per child and writes them as a run file. */
+    private Path writeRun(int count) throws IOException {
+        sortPairs(runChildren, runParents, 0, count - 1);
+        Path run = Files.createTempFile(dir, "run", ".bin");
+        try (SortedWriter out = new SortedWriter(new LongWriter(run, io[1]))) {
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && runChildren[i] == runChildren[i - 1]) continue;
+                out.write(runChildren[i], runParents[i]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges the runs into layer depth + 1, dropping children already in layer depth or
+     * depth - 1. Returns the number of states in the new layer.
+     */
+    private long mergeRuns(ArrayList<Path> runs, int depth) throws IOException {
+        reduceRuns(runs);
+        try (RunMerger merger = new RunMerger(runs);
+             SortedReader current = new SortedReader(new LongReader(stateFiles.get(depth), io[0]), false);
+             SortedReader previous = depth == 0 ? null : new SortedReader(new LongReader(stateFiles.get(depth - 1), io[1]), false);
+             SortedWriter states = new SortedWriter(new LongWriter(newLayerFile(stateFiles, depth + 1), io[2]));
+             LongWriter parents = new LongWriter(newLayerFile(parentFiles, depth + 1), io[3])) {
+            long count = 0;
+            while (merger.next()) {
+                if (contains(current, merger.child) || contains(previous, merger.child)) continue;
+                states.write(merger.child);
+                parents.writeVarLong(merger.parent);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /** Merges runs in groups until at most MAX_FAN_IN are left, bounding the files open in the final merge. */
+    private void reduceRuns(ArrayList<Path> runs) throws IOException {
+        while (runs.size() > MAX_FAN_IN) {
+            Path merged = Files.createTempFile(dir, "run", ".bin");
+            runs.add(merged); // Listed before it is written, so a failure still deletes it
+            List<Path> group = runs.subList(0, MAX_FAN_IN);
+            try (RunMerger merger = new RunMerger(group);
+                 SortedWriter out = new SortedWriter(new LongWriter(merged, io[0]))) {
+                while (merger.next()) out.write(merger.child, merger.parent);
+            }
+            for (Path run : group) Files.delete(run);
+            group.clear();
+        }
+    }
+
+    /** Advances a sorted layer past everything below code; true if code is in it. */
+    private static boolean contains(SortedReader layer, long code) throws IOException {
+        if (layer == null) return false;
+        while (layer.hasNext() && layer.peek() < code) layer.next();
+        return layer.hasNext() && layer.peek() == code;
+    }
+
+    /** Walks back from the goal, one layer scan per move. */
+    private ArrayList<BFS.Move> reconstructMoves(long goalCode, int goalDepth, long[] codes, int[] moves) throws IOException {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        ArrayList<BFS.Move> path = new ArrayList<>();
+        long code = goalCode;
+        for (int depth = goalDepth; depth > 0; depth--) {
+            long parent = codeAt(depth - 1, parentOf(code, depth));
+            codec.decode(parent, state);
+            int n = packed.successors(state, codec, codes, moves);
+            int move = -1;
+            for (int i = 0; i < n && move < 0; i++) {
+                if (codes[i] == code) move = moves[i];
+            }
+            if (move < 0) throw new IllegalStateException("Layer " + depth + " has a parent link with no matching move");
+            path.add(BFS.unpackMove(move));
+            code = parent;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /** The position in layer depth - 1 of the parent of code, which is in layer depth. */
+    private long parentOf(long code, int depth) throws IOException {
+        // The frontier reader still holds io[0] while this runs
+        try (SortedReader states = new SortedReader(new LongReader(stateFiles.get(depth), io[2]), false);
+             LongReader parents = new LongReader(parentFiles.get(depth), io[3])) {
+            while (states.hasNext()) {
+                long next = states.next();
+                long parent = parents.readVarLong();
+                if (next == code) return parent;
+                if (next > code) break;
+            }
+        }
+        throw new IllegalStateException("State missing from layer " + depth);
+    }
+
+    private long codeAt(int depth, long index) throws IOException {
+        try (SortedReader states = new SortedReader(new LongReader(stateFiles.get(depth), io[2]), false)) {
+            for (long i = 0; i < index; i++) states.next();
+            return states.next();
+        }
+    }
+
+    private Path newLayerFile(ArrayList<Path> files, int depth) throws IOException {
+        Path file = Files.createTempFile(dir, (files == stateFiles ? "states-" : "parents-") + depth + "-", ".bin");
+        files.add(file);
+        return file;
+    }
+
+    private void deleteLayers() {
+        try {
+            for (Path file : stateFiles) Files.deleteIfExists(file);
+            for (Path file : parentFiles) Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not delete layer files", e);
+        }
+        stateFiles.clear();
+        parentFiles.clear();
+    }
+
+    /** Quicksort of keys[lo..hi], moving values along with their keys. */
+    private static void sortPairs(long[] keys, long[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            long pivot = median(keys[lo], keys[(lo + hi) >>> 1], keys[hi]);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) swap(keys, values, i++, j--);
+            }
+            // Recurse into the smaller side to bound the stack depth
+            if (j - lo < hi - i) {
+                sortPairs(keys, values, lo, j);
+                lo = i;
+            }
+            else {
+                sortPairs(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) swap(keys, values, j - 1, j);
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] keys, long[] values, int i, int j) {
+        long k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        long v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+
+    /** K-way merge of run files into ascending children, one (child, parent) pair per child. */
+    private final class RunMerger implements AutoCloseable {
+        private final PriorityQueue<SortedReader> heads;
+        private final ArrayList<SortedReader> open = new ArrayList<>();
+        long child;
+        long parent;
+        private boolean started;
+
+        RunMerger(List<Path> runs) throws IOException {
+            heads = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> Long.compare(a.peek(), b.peek()));
+            while (runBuffers.size() < runs.size()) runBuffers.add(ByteBuffer.allocateDirect(RUN_BUFFER_BYTES));
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    SortedReader reader = new SortedReader(new LongReader(runs.get(i), runBuffers.get(i)), true);
+                    open.add(reader);
+                    if (reader.hasNext()) heads.add(reader);
+                }
+            }
+            catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /** Moves to the next distinct child; false once every run is used up. */
+        boolean next() throws IOException {
+            while (!heads.isEmpty()) {
+                SortedReader run = heads.poll();
+                long nextParent = run.payload();
+                long nextChild = run.next();
+                if (run.hasNext()) heads.add(run);
+                if (started && nextChild == child) continue; // Also produced by another run
+                started = true;
+                child = nextChild;
+                parent = nextParent;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (SortedReader reader : open) reader.close();
+        }
+    }
+
+    /**
+     * Ascending longs as varint deltas, restarting from an absolute value every
+     * BLOCK_VALUES so each block decodes on its own. Sorted codes of one layer sit close
+     * together, so most deltas take one to three bytes instead of eight. With payloads,
+     * each value is followed by a second varint that is not delta coded (a run's parents).
+     */
+    private static final class SortedWriter implements AutoCloseable {
+        private final LongWriter out;
+        private long last;
+        private long count;
+
+        SortedWriter(LongWriter out) {
+            this.out = out;
+        }
+
+        void write(long value) throws IOException {
+            out.writeVarLong(count++ % BLOCK_VALUES == 0 ? value : value - last);
+            last = value;
+        }
+
+        void write(long value, long payload) throws IOException {
+            write(value);
+            out.writeVarLong(payload);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Reads a SortedWriter file back lazily, one value of lookahead at a time. */
+    private static final class SortedReader implements AutoCloseable {
+        private final LongReader in;
+        private final boolean payloads;
+        private long value;
+        private long payload;
+        private long count;
+        private boolean ready;
+
+        SortedReader(LongReader in, boolean payloads) {
+            this.in = in;
+            this.payloads = payloads;
+        }
+
+        boolean hasNext() throws IOException {
+            if (ready) return true;
+            if (!in.hasMoreBytes()) return false;
+            long v = in.readVarLong();
+            value = count++ % BLOCK_VALUES == 0 ? v : value + v;
+            if (payloads) payload = in.readVarLong();
+            ready = true;
+            return true;
+        }
+
+        /** The next value without consuming it; only valid after hasNext() returned true. */
+        long peek() {
+            return value;
+        }
+
+        /** The payload of the next value; only valid after hasNext() returned true. */
+        long payload() {
+            return payload;
+        }
+
+        long next() throws IOException {
+            if (!hasNext()) throw new IllegalStateException("Read past the end of a layer file");
+            ready = false;
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** Sequential output of varint longs through a borrowed direct buffer. */
+    private static final class LongWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        LongWriter(Path file, ByteBuffer buffer) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = buffer.clear();
+        }
+
+        /** Seven bits per byte, low bits first, high bit set on all but the last byte. */
+        void writeVarLong(long value) throws IOException {
+            if (buffer.remaining() < MAX_VARLONG_BYTES) flush();
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) (value | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    /** Sequential input of varint longs through a borrowed direct buffer. */
+    private static final class LongReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        LongReader(Path file, ByteBuffer buffer) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.buffer = buffer.clear().flip();
+        }
+
+        /** True once at least bytes are buffered, false if the file ends first. */
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return true;
+            buffer.compact();
+            while (buffer.position() < bytes && channel.read(buffer) > 0) {
+                // Keep reading; a short read is not the end of the file
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+
+        boolean hasMoreBytes() throws IOException {
+            return fill(1);
+        }
+
+        long readVarLong() throws IOException {
+            // A varint never straddles the end of the file, so a short fill is only the last one
+            fill(MAX_VARLONG_BYTES);
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
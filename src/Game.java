@@ -1,7 +1,11 @@
 import java.awt.*;
 import java.awt.event.*;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class Game implements MouseListener, KeyListener, ActionListener {
     private GameView window;
@@ -11,8 +15,18 @@ public class Game implements MouseListener, KeyListener, ActionListener {
     private Timer clock;
     private ArrayList<BFS.Move> solution;
     private int solutionStep = 0;
+    private int pathStep = 0;
+    private Piece movingPiece;
     public boolean selectingConfig;
 
+    private final BackgroundSolver solver = new BackgroundSolver();
+    private CompletableFuture<ArrayList<BFS.Move>> pendingSolve;
+    private CancellationToken solveCancellation;
+    private SolverStats solveProgress;
+    private String solveMessage;
+    private PackedBoard packedBoard; // For move hints; rebuilt when board changes
+    private Board packedFor;
+
     private int currPuzzle;
     private final int DONKEY = 0;
     private final int PENNANT = 1;
@@ -32,13 +46,60 @@ public class Game implements MouseListener, KeyListener, ActionListener {
         return moveCount;
     }
 
-    private boolean applyMove(Board board, BFS.Move m) {
-        for (Piece p : board.getPieces()) {
-            if (p.getType() == m.type && p.getTopLeft() == m.fromTopLeft) {
-                return board.movePiece(p, m.dir);
+    public boolean isSolving() {
+        return pendingSolve != null;
+    }
+
+    /** Latest stats from the running solve, or null before the first report. */
+    public SolverStats getSolveProgress() {
+        return solveProgress;
+    }
+
+    /** Why the last solve produced nothing to play, or null. */
+    public String getSolveMessage() {
+        return solveMessage;
+    }
+
+    /**
+     * Empty cells the selected piece can slide into with one move, as a mask of cell
+     * numbers. Zero when nothing is selected or the board is too big to pack.
+     */
+    public long getMoveHints() {
+        if (selectedPiece == null || board.getNumRows() * board.getNumCols() > 64) return 0L;
+        if (packedFor != board) {
+            packedBoard = new PackedBoard(board);
+            packedFor = board;
+        }
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packedBoard.load(board, state);
+        int type = selectedPiece.getType();
+        long bit = 1L << selectedPiece.getTopLeft();
+        if ((state[type] & bit) == 0) return 0L;
+
+        long[] masks = new long[PackedBoard.NUM_TYPES * 4];
+        packedBoard.moveMasks(state, masks);
+        long covered = packedBoard.cellsOf(type, bit);
+        long hints = 0L;
+        for (int d = 0; d < 4; d++) {
+            if ((masks[type * 4 + d] & bit) == 0) continue;
+            hints |= packedBoard.cellsOf(type, packedBoard.shift(bit, d)) & ~covered;
+        }
+        return hints;
+    }
+
+    /** Plays the next single-cell step of m, so multi-cell moves animate one cell per tick. */
+    private boolean applyStep(Board board, BFS.Move m) {
+        if (pathStep == 0) {
+            movingPiece = null;
+            for (Piece p : board.getPieces()) {
+                if (p.getType() == m.type && p.getTopLeft() == m.fromTopLeft) {
+                    movingPiece = p;
+                    break;
+                }
             }
+            if (movingPiece == null) return false;
         }
-        return false;
+        return board.movePiece(movingPiece, m.path[pathStep]);
     }
 
     public void runGame() {
@@ -51,19 +112,71 @@ public class Game implements MouseListener, KeyListener, ActionListener {
     }
 
     private void toggleAutoplay() {
-        if (clock.isRunning()) {
+        if (isSolving()) {
+            cancelSolve();
+        }
+        else if (clock.isRunning()) {
             clock.stop();
         }
         else {
-            BFS bfs = new BFS(board);
-            solution = bfs.solve(new Board(board));
-            if (solution == null) {
-                System.out.println("No solution found.");
-                return;
+            startSolve();
+        }
+    }
+
+    /** Solves on the background thread; playback starts from finishSolve once the moves are in. */
+    private void startSolve() {
+        SolverOptions options = new SolverOptions();
+        options.macroMoves = true; // Count moves the usual Klotski way
+        options.cancellation = new CancellationToken();
+        options.listener = BackgroundSolver.onEventThread(new SolverListener() {
+            @Override
+            public void onProgress(SolverStats stats) {
+                if (options.cancellation != solveCancellation) return; // A stale solve
+                solveProgress = stats;
+                window.repaint();
             }
+        });
+
+        solveCancellation = options.cancellation;
+        solveProgress = null;
+        solveMessage = null;
+        CompletableFuture<ArrayList<BFS.Move>> future = solver.solve(board, options);
+        pendingSolve = future;
+        future.whenComplete((moves, error) -> SwingUtilities.invokeLater(() -> finishSolve(future, moves, error)));
+        window.repaint();
+    }
+
+    private void finishSolve(CompletableFuture<ArrayList<BFS.Move>> future, ArrayList<BFS.Move> moves, Throwable error) {
+        if (future != pendingSolve) return; // Cancelled and superseded
+        pendingSolve = null;
+        solveCancellation = null;
+        solveProgress = null;
+        window.repaint();
+
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof CancellationException) return;
+        if (cause != null || moves == null) {
+            // Nothing to play; leave the board as it is so the player can keep going
+            solution = null;
             solutionStep = 0;
-            clock.start();
+            pathStep = 0;
+            solveMessage = cause != null ? "Solver failed: " + cause : "No solution found.";
+            if (cause != null) cause.printStackTrace();
+            return;
         }
+        solution = moves;
+        solutionStep = 0;
+        pathStep = 0;
+        clock.start();
+    }
+
+    private void cancelSolve() {
+        if (!isSolving()) return;
+        solveCancellation.cancel();
+        pendingSolve = null;
+        solveCancellation = null;
+        solveProgress = null;
+        window.repaint();
     }
 
     public void mouseClicked(MouseEvent e) {
@@ -115,7 +228,7 @@ public class Game implements MouseListener, KeyListener, ActionListener {
         if (board == null) return;
         if (window == null) return;
 
-        if (clock.isRunning()) return;
+        if (clock.isRunning() || isSolving()) return;
 
         int row = (y - window.getBoardTopY()) / window.CELL_SIZE;
         int col = (x - window.getBoardLeftX()) / window.CELL_SIZE;
@@ -127,11 +240,10 @@ public class Game implements MouseListener, KeyListener, ActionListener {
         }
 
         int cellNum = board.getNumRows() * board.getNumCols() - 1 - (row * board.getNumCols() + col);
-        long cellMask = 1L << cellNum;
-        if ((cellMask & board.getBitboard()) != 0) { // Clicked a piece
+        if (board.getCells().get(cellNum)) { // Clicked a piece
             Piece clickedPiece = null;
             for (Piece piece : board.getPieces()) {
-                if ((cellMask & piece.getLocation()) != 0) {
+                if (piece.getCells().get(cellNum)) {
                     clickedPiece = piece;
                     break;
                 }
@@ -150,16 +262,18 @@ public class Game implements MouseListener, KeyListener, ActionListener {
 
             // Otherwise, attempt to move a piece or deselect
             char dir;
-            if (!board.isTouchingLeft(selectedPiece) && ((cellMask >>> 1) & selectedPiece.getLocation()) != 0) {
+            BitBoard selected = selectedPiece.getCells();
+            int nCols = board.getNumCols();
+            if (!board.isTouchingLeft(selectedPiece) && selected.get(cellNum - 1)) {
                 dir = 'l';
             }
-            else if (!board.isTouchingRight(selectedPiece) && ((cellMask << 1) & selectedPiece.getLocation()) != 0) {
+            else if (!board.isTouchingRight(selectedPiece) && selected.get(cellNum + 1)) {
                 dir = 'r';
             }
-            else if (!board.isTouchingTop(selectedPiece) && ((cellMask >>> board.getNumCols()) & selectedPiece.getLocation()) != 0) {
+            else if (!board.isTouchingTop(selectedPiece) && selected.get(cellNum - nCols)) {
                 dir = 'u';
             }
-            else if (!board.isTouchingBottom(selectedPiece) && ((cellMask << board.getNumCols()) & selectedPiece.getLocation()) != 0) {
+            else if (!board.isTouchingBottom(selectedPiece) && selected.get(cellNum + nCols)) {
                 dir = 'd';
             }
             else {
@@ -185,6 +299,7 @@ public class Game implements MouseListener, KeyListener, ActionListener {
             toggleAutoplay();
         }
         if (e.getKeyCode() == KeyEvent.VK_R) {
+            cancelSolve();
             if (currPuzzle == DONKEY) {
                 board.initPiecesDonkey();
             }
@@ -195,11 +310,18 @@ public class Game implements MouseListener, KeyListener, ActionListener {
                 return; // TODO: Reset functionality for puzzles other than donkey/pennant
             }
             moveCount = 0;
+            solveMessage = null;
+            selectedPiece = null; // The reset replaced every piece
             window.repaint();
         }
         if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+            if (isSolving()) {
+                cancelSolve(); // First press only stops the search
+                return;
+            }
             clock.stop();
             moveCount = 0;
+            solveMessage = null;
             selectingConfig = true;
             window.repaint();
         }
@@ -216,14 +338,17 @@ public class Game implements MouseListener, KeyListener, ActionListener {
 
         BFS.Move m = solution.get(solutionStep);
 
-        boolean applied = applyMove(board, m);
+        boolean applied = applyStep(board, m);
         if (!applied) {
             clock.stop();
             throw new IllegalStateException("Failed to apply move at step " + solutionStep + ": " + m);
         }
 
-        solutionStep++;
-        moveCount++;
+        if (++pathStep == m.path.length) {
+            pathStep = 0;
+            solutionStep++;
+            moveCount++;
+        }
         window.repaint();
     }
 
@@ -25,6 +25,8 @@ public class GameView extends JFrame {
             Color.getHSBColor((float) (30.0 / 360), 1f, 0.59f), // Brown
             Color.getHSBColor((float) (220.0 / 360), 0.8f, 0.4f)}; // Dark Indigo
 
+    public static final Color HINT_COLOR = new Color(210, 240, 210);
+
     private BufferedImage donkeyPuzzleImage;
     private BufferedImage pennantPuzzleImage;
 
@@ -72,12 +74,13 @@ public class GameView extends JFrame {
         ArrayList<Piece> pieces = game.getBoard().getPieces();
         int nRows = game.getBoard().getNumRows();
         int nCols = game.getBoard().getNumCols();
+        long hints = game.getMoveHints();
         for (int row = 0; row < nRows; row++) {
             for (int col = 0; col < nCols; col++) {
-                long cellMask = 1L << (nRows * nCols - 1 - (nCols * row + col));
-                Color color = Color.WHITE;
+                int cell = nRows * nCols - 1 - (nCols * row + col);
+                Color color = cell < 64 && (hints >>> cell & 1L) != 0 ? HINT_COLOR : Color.WHITE;
                 for (int i = 0; i < pieces.size(); i++) {
-                    if ((cellMask & pieces.get(i).getLocation()) != 0) {
+                    if (pieces.get(i).getCells().get(cell)) {
                         if (i < colors.length) color = colors[i];
                         else color = generateColor(i);
                         break;
@@ -112,8 +115,20 @@ public class GameView extends JFrame {
         g.drawString(moveCountText, 50, 100);
     }
 
+    public void drawSolveProgressText(Graphics g) {
+        g.setColor(Color.BLACK);
+        if (!game.isSolving()) {
+            if (game.getSolveMessage() != null) g.drawString(game.getSolveMessage(), 50, 150);
+            return;
+        }
+        SolverStats stats = game.getSolveProgress();
+        String text = stats == null ? "Solving..."
+                : String.format("Solving: depth %d, %,d states", stats.depth, stats.expanded);
+        g.drawString(text, 50, 150);
+    }
+
     public void drawControlsText(Graphics g) {
-        g.drawString("Press p to pause/play solution", 50, 200);
+        g.drawString("Press p to pause/play solution (or cancel solving)", 50, 200);
         g.drawString("Press r to reset board", 50, 250);
         g.drawString("Press esc to return to board selection", 50, 300);
     }
@@ -145,6 +160,7 @@ public class GameView extends JFrame {
         else {
             drawBoard(g);
             drawMoveCountText(g);
+            drawSolveProgressText(g);
             drawControlsText(g);
         }
     }
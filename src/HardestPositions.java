@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+/**
+ * The positions farthest from any solved state, over every layout of one inventory.
+ *
+ * A multi-source BFS is seeded with every goal state at once (every placement with the
+ * 2x2 on the goal square) and run to exhaustion. Moves are reversible, so this is the
+ * backward search from the goal set, and each state's layer is its optimal solution
+ * length. The last layer holds the hardest solvable positions. Layouts in components
+ * without any goal state are unsolvable and never reached.
+ *
+ * <pre>
+ *   java HardestPositions "5x4 goal=6 2x2@18 2x1@19 ..." [show=N]
+ * </pre>
+ * takes the inventory and goal from a PuzzleFormat line and prints the distance
+ * histogram and up to N hardest positions.
+ */
+public final class HardestPositions {
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final long[] histogram;
+    private final long[] hardestCodes;
+    private final long numStates;
+
+    private HardestPositions(PackedBoard packed, StateCodec codec, long[] histogram, long[] hardestCodes, long numStates) {
+        this.packed = packed;
+        this.codec = codec;
+        this.histogram = histogram;
+        this.hardestCodes = hardestCodes;
+        this.numStates = numStates;
+    }
+
+    public static HardestPositions find(PackedBoard packed) {
+        return find(packed, new SolverOptions());
+    }
+
+    public static HardestPositions find(PackedBoard packed, SolverOptions options) {
+        return find(packed, options, null);
+    }
+
+    /** Receives every solvable state once, with its optimal solution length, in nondecreasing distance order. */
+    public interface DistanceVisitor {
+        void visit(long[] state, int distance);
+    }
+
+    /** As find(packed, options), also passing every state to visitor (which may be null). */
+    public static HardestPositions find(PackedBoard packed, SolverOptions options, DistanceVisitor visitor) {
+        StateCodec codec = new StateCodec(packed);
+        if (!codec.fitsInLong()) throw new IllegalArgumentException("HardestPositions needs single-long state codes");
+
+        try (VisitedStore visited = options.createVisitedStore(1)) {
+            SolverMonitor monitor = new SolverMonitor(options, visited);
+            try {
+                packed.forEachGoalState(state -> {
+                    visited.addIfAbsent(codec.encode(state), -1, -1);
+                    return true;
+                });
+
+                long[] histogram = new long[64];
+                long[] state = new long[PackedBoard.NUM_TYPES];
+                long[] codes = new long[packed.maxSuccessors()];
+                int[] moves = new int[packed.maxSuccessors()];
+                int depth = 0;
+                int layerStart = 1;
+                int layerEnd = visited.nextId();
+                while (true) {
+                    if (depth == histogram.length) histogram = Arrays.copyOf(histogram, depth * 2);
+                    histogram[depth] = layerEnd - layerStart;
+                    monitor.startLayer(depth, layerEnd - layerStart);
+                    for (int id = layerStart; id < layerEnd; id++) {
+                        monitor.expand();
+                        codec.decode(visited.getCode(id), state);
+                        if (visitor != null) visitor.visit(state, depth);
+                        int n = packed.successors(state, codec, codes, moves);
+                        for (int i = 0; i < n; i++) visited.addIfAbsent(codes[i], id, moves[i]);
+                    }
+                    monitor.endLayer();
+                    if (visited.nextId() == layerEnd) break;
+                    layerStart = layerEnd;
+                    layerEnd = visited.nextId();
+                    depth++;
+                }
+
+                long[] hardest = new long[layerEnd - layerStart];
+                for (int id = layerStart; id < layerEnd; id++) hardest[id - layerStart] = visited.getCode(id);
+                Arrays.sort(hardest);
+                return new HardestPositions(packed, codec, Arrays.copyOf(histogram, depth + 1), hardest, visited.size());
+            }
+            finally {
+                monitor.finish();
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) throw new IllegalArgumentException("Usage: HardestPositions \"<puzzle line>\" [show=N]");
+        int show = 10;
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("show=")) throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            show = Integer.parseInt(args[i].substring(5));
+        }
+
+        HardestPositions result = find(new PackedBoard(PuzzleFormat.parse(args[0]).board));
+        System.out.printf("%,d solvable states, max distance %d, %,d hardest%n",
+                result.size(), result.getMaxDistance(), result.getHardestCodes().length);
+        long[] histogram = result.getHistogram();
+        for (int d = 0; d < histogram.length; d++) System.out.println(d + "\t" + histogram[d]);
+        long[] hardest = result.getHardestCodes();
+        for (int i = 0; i < Math.min(show, hardest.length); i++) {
+            System.out.println(PuzzleFormat.toText("hardest" + i + "-d" + result.getMaxDistance(), result.toBoard(hardest[i])));
+        }
+    }
+
+    public PackedBoard getPackedBoard() {
+        return packed;
+    }
+
+    /** Number of solvable states, i.e. states in components that contain a goal. */
+    public long size() {
+        return numStates;
+    }
+
+    public int getMaxDistance() {
+        return histogram.length - 1;
+    }
+
+    /** histogram[d] is the number of states whose optimal solution takes d moves. */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /** StateCodec codes of the states at getMaxDistance(), ascending. */
+    public long[] getHardestCodes() {
+        return hardestCodes.clone();
+    }
+
+    public Board toBoard(long code) {
+        return codec.toBoard(code);
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Admissible lower bound on the number of moves from a PackedBoard state to a goal.
+ * AStar and IDAStar results are only optimal if the bound never overestimates.
+ */
+public interface Heuristic {
+    /** Returned by estimate for states known to have no path to a goal; searches skip them. */
+    int UNSOLVABLE = Integer.MAX_VALUE;
+
+    int estimate(PackedBoard packed, long[] state);
+
+    /** No information: A* degrades to uniform-cost search, IDA* to iterative deepening. */
+    Heuristic ZERO = (packed, state) -> 0;
+
+    Heuristic MANHATTAN = Heuristic::manhattan;
+
+    Heuristic MANHATTAN_BLOCKING = (packed, state) -> manhattan(packed, state) + blocking(packed, state);
+
+    /** Rows plus columns between the 2x2 and the goal square; each move shifts it by one cell. */
+    static int manhattan(PackedBoard packed, long[] state) {
+        int cols = packed.getNumCols();
+        int goal = packed.getGoalSquare();
+        int best = Integer.MAX_VALUE;
+        for (long rest = state[Piece.TWO_BY_TWO]; rest != 0; rest &= rest - 1) {
+            int topLeft = Long.numberOfTrailingZeros(rest);
+            int dist = Math.abs(topLeft / cols - goal / cols) + Math.abs(topLeft % cols - goal % cols);
+            best = Math.min(best, dist);
+        }
+        return best == Integer.MAX_VALUE ? 0 : best;
+    }
+
+    /**
+     * Other pieces overlapping the goal footprint. Each must move at least once, and those moves
+     * are separate from the 2x2's own, so this adds to manhattan without losing admissibility.
+     */
+    static int blocking(PackedBoard packed, long[] state) {
+        int cols = packed.getNumCols();
+        long footprint = packed.cellsOf(Piece.TWO_BY_TWO, 1L << packed.getGoalSquare());
+        // A piece overlaps the footprint iff its top-left is in the footprint grown up/left by its size
+        int count = Long.bitCount(state[Piece.TWO_BY_ONE] & (footprint | (footprint << cols)));
+        count += Long.bitCount(state[Piece.ONE_BY_TWO] & (footprint | (footprint << 1)));
+        count += Long.bitCount(state[Piece.ONE_BY_ONE] & footprint);
+        return count;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Iterative-deepening A*: repeated depth-first searches bounded by g + h, with no visited
+ * table, so memory is just the current path. Immediately undoing the previous move is
+ * pruned; other transpositions are searched again, which is the price of the low memory.
+ */
+public class IDAStar {
+    private static final int FOUND = -1;
+    private static final int NO_MOVE = -1;
+
+    private final PackedBoard packed;
+    private final Heuristic heuristic;
+    private final long nodeLimit;
+    private final SolverOptions options;
+    private SolverMonitor monitor;
+    private int[] path = new int[64];
+    private int pathLength;
+    private long expanded;
+
+    public IDAStar(Board board, Heuristic heuristic) {
+        this(board, heuristic, new SolverOptions());
+    }
+
+    public IDAStar(Board board, Heuristic heuristic, SolverOptions options) {
+        packed = new PackedBoard(board);
+        if (heuristic instanceof PatternDatabase patterns && !patterns.matches(packed)) {
+            throw new IllegalArgumentException("Pattern database is for a different puzzle");
+        }
+        this.heuristic = heuristic;
+        nodeLimit = options.idaNodeLimit;
+        this.options = options;
+    }
+
+    /** Nodes expanded over all iterations of the last solve. */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /** Returns an optimal solution, or null if there is none or the node limit was hit. */
+    public ArrayList<BFS.Move> solve(Board start) {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(start, state);
+        expanded = 0;
+        monitor = new SolverMonitor(options, null);
+        try {
+            // Each iteration is reported as a layer whose depth is its f bound
+            int bound = heuristic.estimate(packed, state);
+            if (bound == Heuristic.UNSOLVABLE) return null;
+            while (true) {
+                monitor.startLayer(bound, 0);
+                int t = search(state, 0, bound, NO_MOVE);
+                monitor.endLayer();
+                if (t == FOUND) {
+                    ArrayList<BFS.Move> moves = new ArrayList<>();
+                    for (int i = 0; i < pathLength; i++) moves.add(BFS.unpackMove(path[i]));
+                    return moves;
+                }
+                if (t == Integer.MAX_VALUE || expanded >= nodeLimit) return null;
+                bound = t;
+            }
+        }
+        finally {
+            monitor.finish();
+        }
+    }
+
+    /** Returns FOUND, or the smallest f that exceeded the bound below this node. */
+    private int search(long[] state, int g, int bound, int undoMove) {
+        int h = heuristic.estimate(packed, state);
+        if (h == Heuristic.UNSOLVABLE) return Integer.MAX_VALUE;
+        int f = g + h;
+        if (f > bound) return f;
+        if (packed.isGoal(state)) {
+            pathLength = g;
+            return FOUND;
+        }
+        if (++expanded >= nodeLimit) return Integer.MAX_VALUE;
+        monitor.expand();
+        if (g == path.length) path = Arrays.copyOf(path, path.length * 2);
+
+        int min = Integer.MAX_VALUE;
+        long occ = packed.occupancy(state);
+        MoveTable table = packed.getMoveTable();
+        for (int type = 0; type < PackedBoard.NUM_TYPES; type++) {
+            for (long rest = state[type]; rest != 0; rest &= rest - 1) {
+                int fromTopLeft = Long.numberOfTrailingZeros(rest);
+                int entry = table.index(type, fromTopLeft, 0);
+                for (int d = 0; d < 4; d++, entry++) {
+                    if (!table.isLegal(entry, occ)) continue;
+                    int move = BFS.packMove(type, fromTopLeft, d);
+                    if (move == undoMove) continue;
+
+                    packed.applyMove(state, move);
+                    path[g] = move;
+                    int t = search(state, g + 1, bound, BFS.invertMoveCode(move, packed));
+                    packed.applyMove(state, move);
+                    if (t == FOUND) return FOUND;
+                    if (t < min) min = t;
+                }
+            }
+        }
+        return min;
+    }
+}
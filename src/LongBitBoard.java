@@ -0,0 +1,99 @@
+/** BitBoard for boards of up to 64 cells: the whole set is one long. */
+public final class LongBitBoard extends BitBoard {
+    private final long bits;
+
+    public LongBitBoard(int rows, int cols, long bits) {
+        super(rows, cols);
+        if (rows * cols > 64) throw new IllegalArgumentException("LongBitBoard supports at most 64 cells: " + rows * cols);
+        this.bits = bits;
+    }
+
+    private long bitsOf(BitBoard other) {
+        return ((LongBitBoard) other).bits;
+    }
+
+    @Override
+    public boolean get(int cell) {
+        return cell >= 0 && cell < rows * cols && (bits & (1L << cell)) != 0;
+    }
+
+    @Override
+    public BitBoard with(int cell) {
+        return new LongBitBoard(rows, cols, bits | (1L << cell));
+    }
+
+    @Override
+    public BitBoard or(BitBoard other) {
+        return new LongBitBoard(rows, cols, bits | bitsOf(other));
+    }
+
+    @Override
+    public BitBoard and(BitBoard other) {
+        return new LongBitBoard(rows, cols, bits & bitsOf(other));
+    }
+
+    @Override
+    public BitBoard andNot(BitBoard other) {
+        return new LongBitBoard(rows, cols, bits & ~bitsOf(other));
+    }
+
+    @Override
+    public BitBoard xor(BitBoard other) {
+        return new LongBitBoard(rows, cols, bits ^ bitsOf(other));
+    }
+
+    @Override
+    public boolean intersects(BitBoard other) {
+        return (bits & bitsOf(other)) != 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    @Override
+    public int cardinality() {
+        return Long.bitCount(bits);
+    }
+
+    @Override
+    public BitBoard shift(int dir) {
+        long kept = bits & ~edges(rows, cols)[dir][0];
+        long moved = switch (dir) {
+            case PackedBoard.UP -> kept << cols;
+            case PackedBoard.DOWN -> kept >>> cols;
+            case PackedBoard.LEFT -> kept << 1;
+            case PackedBoard.RIGHT -> kept >>> 1;
+            default -> throw new IllegalArgumentException("Bad dir: " + dir);
+        };
+        return new LongBitBoard(rows, cols, moved);
+    }
+
+    @Override
+    public boolean isTouching(int dir) {
+        return (bits & edges(rows, cols)[dir][0]) != 0;
+    }
+
+    @Override
+    public long toLong() {
+        return bits;
+    }
+
+    @Override
+    public int highestCell() {
+        return 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LongBitBoard other)) return false;
+        return bits == other.bits && rows == other.rows && cols == other.cols;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+}
@@ -0,0 +1,225 @@
+import java.util.Arrays;
+
+/**
+ * Heap-backed open-addressing VisitedStore.
+ *
+ * Ids are handed out densely from 1 in insertion order. Codes, parents and move codes
+ * live in parallel primitive arrays indexed by id, and the hash table itself is a
+ * single int[] of ids probed linearly. Because the codes are kept by id, growing the
+ * table just re-inserts ids 1..n into a fresh int[] and never copies the per-id arrays.
+ *
+ * Layouts whose codes need the 128-bit form use keyWords = 2; codes are then stored as
+ * (lo, hi) pairs.
+ */
+public final class LongVisitedTable implements VisitedStore {
+    private static final int EMPTY = 0;
+    private static final int MAX_TABLE_CAPACITY = 1 << 30;
+
+    private final int keyWords;
+    private int[] idAtSlot;
+    private long[] codeById;     // keyWords entries per id
+    private int[] parentById;
+    private int[] moveById;
+    private int nextId;
+    private int resizeAt;
+
+    private long lookups;
+    private long probes;
+    private int maxProbe;
+
+    public LongVisitedTable(int expectedSize) {
+        this(expectedSize, 1);
+    }
+
+    public LongVisitedTable(int expectedSize, int keyWords) {
+        if (keyWords != 1 && keyWords != 2) throw new IllegalArgumentException("keyWords must be 1 or 2: " + keyWords);
+        this.keyWords = keyWords;
+        allocateTable(tableCapacityFor(expectedSize));
+
+        int idCap = Math.max(16, expectedSize + 1);
+        codeById = new long[idCap * keyWords];
+        parentById = new int[idCap];
+        moveById = new int[idCap];
+
+        nextId = 1;
+    }
+
+    /** Smallest power-of-two table that holds expectedSize entries at load factor 0.7. */
+    private static int tableCapacityFor(int expectedSize) {
+        long needed = ((long) expectedSize * 10) / 7 + 1;
+        int cap = 16;
+        while (cap < needed && cap < MAX_TABLE_CAPACITY) cap <<= 1;
+        return cap;
+    }
+
+    private void allocateTable(int cap) {
+        idAtSlot = new int[cap];
+        resizeAt = (int) (((long) cap * 7) / 10);
+    }
+
+    @Override
+    public int addIfAbsent(long code, int parent, int moveCode) {
+        return addIfAbsent(code, 0L, parent, moveCode);
+    }
+
+    @Override
+    public int addIfAbsent(long lo, long hi, int parent, int moveCode) {
+        if (size() >= resizeAt) rehash();
+
+        int mask = idAtSlot.length - 1;
+        int idx = VisitedStore.mix(lo, hi) & mask;
+        int probe = 1;
+        while (true) {
+            int cur = idAtSlot[idx];
+            if (cur == EMPTY) {
+                recordProbe(probe);
+                int id = nextId++;
+                ensureIdCapacity(id);
+                idAtSlot[idx] = id;
+                codeById[id * keyWords] = lo;
+                if (keyWords == 2) codeById[id * 2 + 1] = hi;
+                parentById[id] = parent;
+                moveById[id] = moveCode;
+                return id;
+            }
+            if (matches(cur, lo, hi)) {
+                recordProbe(probe);
+                return -1;
+            }
+            idx = (idx + 1) & mask;
+            probe++;
+        }
+    }
+
+    @Override
+    public int find(long code) {
+        return find(code, 0L);
+    }
+
+    @Override
+    public int find(long lo, long hi) {
+        int mask = idAtSlot.length - 1;
+        int idx = VisitedStore.mix(lo, hi) & mask;
+        int probe = 1;
+        while (true) {
+            int cur = idAtSlot[idx];
+            if (cur == EMPTY || matches(cur, lo, hi)) {
+                recordProbe(probe);
+                return cur == EMPTY ? -1 : cur;
+            }
+            idx = (idx + 1) & mask;
+            probe++;
+        }
+    }
+
+    private boolean matches(int id, long lo, long hi) {
+        if (keyWords == 1) return codeById[id] == lo;
+        return codeById[id * 2] == lo && codeById[id * 2 + 1] == hi;
+    }
+
+    private void recordProbe(int probe) {
+        lookups++;
+        probes += probe;
+        if (probe > maxProbe) maxProbe = probe;
+    }
+
+    @Override
+    public long getCode(int id) {
+        return codeById[id * keyWords];
+    }
+
+    @Override
+    public long getCodeHi(int id) {
+        return keyWords == 2 ? codeById[id * 2 + 1] : 0L;
+    }
+
+    @Override
+    public int getParentById(int id) {
+        return parentById[id];
+    }
+
+    @Override
+    public int getMoveCodeById(int id) {
+        return moveById[id];
+    }
+
+    /** Points id at a new parent, e.g. when A* finds a cheaper way to reach it. */
+    public void relink(int id, int parent, int moveCode) {
+        parentById[id] = parent;
+        moveById[id] = moveCode;
+    }
+
+    @Override
+    public int getKeyWords() {
+        return keyWords;
+    }
+
+    @Override
+    public int size() {
+        return nextId - 1;
+    }
+
+    @Override
+    public int nextId() {
+        return nextId;
+    }
+
+    @Override
+    public int capacity() {
+        return idAtSlot.length;
+    }
+
+    @Override
+    public double loadFactor() {
+        return (double) size() / idAtSlot.length;
+    }
+
+    @Override
+    public double averageProbeLength() {
+        return lookups == 0 ? 0.0 : (double) probes / lookups;
+    }
+
+    @Override
+    public int maxProbeLength() {
+        return maxProbe;
+    }
+
+    @Override
+    public void resetProbeStats() {
+        lookups = 0;
+        probes = 0;
+        maxProbe = 0;
+    }
+
+    @Override
+    public double bytesPerState() {
+        if (size() == 0) return 0.0;
+        long bytes = 4L * idAtSlot.length + 8L * codeById.length + 4L * parentById.length + 4L * moveById.length;
+        return (double) bytes / size();
+    }
+
+    private void ensureIdCapacity(int id) {
+        if (id < parentById.length) return;
+
+        int newCap = parentById.length;
+        while (newCap <= id) newCap += newCap >>> 1; // Grow by 1.5x, these arrays dominate memory
+
+        codeById = Arrays.copyOf(codeById, newCap * keyWords);
+        parentById = Arrays.copyOf(parentById, newCap);
+        moveById = Arrays.copyOf(moveById, newCap);
+    }
+
+    private void rehash() {
+        if (idAtSlot.length >= MAX_TABLE_CAPACITY) throw new IllegalStateException("Visited table is full: " + size());
+        int newCap = idAtSlot.length << 1;
+        idAtSlot = null; // Let the old table go before allocating the new one
+        allocateTable(newCap);
+
+        int mask = newCap - 1;
+        for (int id = 1; id < nextId; id++) {
+            int idx = VisitedStore.mix(getCode(id), getCodeHi(id)) & mask;
+            while (idAtSlot[idx] != EMPTY) idx = (idx + 1) & mask;
+            idAtSlot[idx] = id;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * VisitedStore backed by memory-mapped temp files instead of the Java heap.
+ *
+ * Same layout as LongVisitedTable: an int table of ids probed linearly, and per-id
+ * records (codes, then parent + move code) written in id order. BFS reads the per-id
+ * records sequentially, so the OS can page them in and out of local disk cheaply and
+ * searches far larger than the heap only need page cache for the hash table.
+ *
+ * Files are created in spillDir (the default temp directory when null) and deleted on
+ * close. Mappings themselves are released when the buffers are garbage collected.
+ */
+public final class MappedVisitedTable implements VisitedStore {
+    private static final int EMPTY = 0;
+    private static final long MAX_TABLE_CAPACITY = 1L << 31;
+
+    private final Path spillDir;
+    private final int keyWords;
+    private Region table;       // int id per slot
+    private final Region codes; // keyWords longs per id
+    private final Region links; // parent then move code, one int each per id
+    private long tableCapacity;
+    private int nextId;
+    private long resizeAt;
+
+    private long lookups;
+    private long probes;
+    private int maxProbe;
+
+    public MappedVisitedTable(int expectedSize, int keyWords, Path spillDir) {
+        if (keyWords != 1 && keyWords != 2) throw new IllegalArgumentException("keyWords must be 1 or 2: " + keyWords);
+        this.keyWords = keyWords;
+        this.spillDir = spillDir;
+
+        long needed = ((long) expectedSize * 10) / 7 + 1;
+        long cap = 16;
+        while (cap < needed && cap < MAX_TABLE_CAPACITY) cap <<= 1;
+        allocateTable(cap);
+        codes = new Region(spillDir, "codes");
+        links = new Region(spillDir, "links");
+
+        nextId = 1;
+    }
+
+    private void allocateTable(long cap) {
+        table = new Region(spillDir, "table");
+        table.ensure(cap * 4);
+        tableCapacity = cap;
+        resizeAt = (cap * 7) / 10;
+    }
+
+    @Override
+    public int addIfAbsent(long code, int parent, int moveCode) {
+        return addIfAbsent(code, 0L, parent, moveCode);
+    }
+
+    @Override
+    public int addIfAbsent(long lo, long hi, int parent, int moveCode) {
+        if (size() >= resizeAt) rehash();
+        if (nextId == Integer.MAX_VALUE) throw new IllegalStateException("Visited store is out of ids");
+
+        long mask = tableCapacity - 1;
+        long idx = VisitedStore.mix(lo, hi) & mask;
+        int probe = 1;
+        while (true) {
+            int cur = table.getInt(idx * 4);
+            if (cur == EMPTY) {
+                recordProbe(probe);
+                int id = nextId++;
+                table.putInt(idx * 4, id);
+                long codeAt = (long) id * keyWords * 8;
+                codes.ensure(codeAt + keyWords * 8L);
+                codes.putLong(codeAt, lo);
+                if (keyWords == 2) codes.putLong(codeAt + 8, hi);
+                long linkAt = (long) id * 8;
+                links.ensure(linkAt + 8);
+                links.putInt(linkAt, parent);
+                links.putInt(linkAt + 4, moveCode);
+                return id;
+            }
+            if (matches(cur, lo, hi)) {
+                recordProbe(probe);
+                return -1;
+            }
+            idx = (idx + 1) & mask;
+            probe++;
+        }
+    }
+
+    @Override
+    public int find(long code) {
+        return find(code, 0L);
+    }
+
+    @Override
+    public int find(long lo, long hi) {
+        long mask = tableCapacity - 1;
+        long idx = VisitedStore.mix(lo, hi) & mask;
+        int probe = 1;
+        while (true) {
+            int cur = table.getInt(idx * 4);
+            if (cur == EMPTY || matches(cur, lo, hi)) {
+                recordProbe(probe);
+                return cur == EMPTY ? -1 : cur;
+            }
+            idx = (idx + 1) & mask;
+            probe++;
+        }
+    }
+
+    private boolean matches(int id, long lo, long hi) {
+        if (getCode(id) != lo) return false;
+        return keyWords == 1 || getCodeHi(id) == hi;
+    }
+
+    private void recordProbe(int probe) {
+        lookups++;
+        probes += probe;
+        if (probe > maxProbe) maxProbe = probe;
+    }
+
+    @Override
+    public long getCode(int id) {
+        return codes.getLong((long) id * keyWords * 8);
+    }
+
+    @Override
+    public long getCodeHi(int id) {
+        return keyWords == 2 ? codes.getLong((long) id * 16 + 8) : 0L;
+    }
+
+    @Override
+    public int getParentById(int id) {
+        return links.getInt((long) id * 8);
+    }
+
+    @Override
+    public int getMoveCodeById(int id) {
+        return links.getInt((long) id * 8 + 4);
+    }
+
+    @Override
+    public int getKeyWords() {
+        return keyWords;
+    }
+
+    @Override
+    public int size() {
+        return nextId - 1;
+    }
+
+    @Override
+    public int nextId() {
+        return nextId;
+    }
+
+    @Override
+    public int capacity() {
+        return (int) Math.min(tableCapacity, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public double loadFactor() {
+        return (double) size() / tableCapacity;
+    }
+
+    @Override
+    public double averageProbeLength() {
+        return lookups == 0 ? 0.0 : (double) probes / lookups;
+    }
+
+    @Override
+    public int maxProbeLength() {
+        return maxProbe;
+    }
+
+    @Override
+    public void resetProbeStats() {
+        lookups = 0;
+        probes = 0;
+        maxProbe = 0;
+    }
+
+    @Override
+    public double bytesPerState() {
+        if (size() == 0) return 0.0;
+        return (double) (table.mappedBytes() + codes.mappedBytes() + links.mappedBytes()) / size();
+    }
+
+    @Override
+    public void close() {
+        table.close();
+        codes.close();
+        links.close();
+    }
+
+    private void rehash() {
+        if (tableCapacity >= MAX_TABLE_CAPACITY) throw new IllegalStateException("Visited store is full: " + size());
+        table.close();
+        allocateTable(tableCapacity << 1);
+
+        // Codes are read back in id order, which keeps the old data streaming from disk
+        long mask = tableCapacity - 1;
+        for (int id = 1; id < nextId; id++) {
+            long idx = VisitedStore.mix(getCode(id), getCodeHi(id)) & mask;
+            while (table.getInt(idx * 4) != EMPTY) idx = (idx + 1) & mask;
+            table.putInt(idx * 4, id);
+        }
+    }
+
+    /** A growable temp file mapped in fixed-size chunks. Values never straddle a chunk. */
+    private static final class Region {
+        private static final int CHUNK_SHIFT = 26; // 64 MiB
+        private static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+        private static final long CHUNK_MASK = CHUNK_BYTES - 1;
+
+        private final FileChannel channel;
+        private final ArrayList<MappedByteBuffer> chunks = new ArrayList<>();
+
+        Region(Path dir, String name) {
+            try {
+                Path file = dir == null
+                        ? Files.createTempFile("klotski-" + name, ".bin")
+                        : Files.createTempFile(dir, "klotski-" + name, ".bin");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not create visited spill file", e);
+            }
+        }
+
+        void ensure(long bytes) {
+            while ((long) chunks.size() << CHUNK_SHIFT < bytes) {
+                try {
+                    // Mapping past the end grows the file; the new pages read as zero
+                    chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() << CHUNK_SHIFT, CHUNK_BYTES));
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException("Could not grow visited spill file", e);
+                }
+            }
+        }
+
+        long mappedBytes() {
+            return (long) chunks.size() << CHUNK_SHIFT;
+        }
+
+        int getInt(long at) {
+            return chunks.get((int) (at >>> CHUNK_SHIFT)).getInt((int) (at & CHUNK_MASK));
+        }
+
+        void putInt(long at, int value) {
+            chunks.get((int) (at >>> CHUNK_SHIFT)).putInt((int) (at & CHUNK_MASK), value);
+        }
+
+        long getLong(long at) {
+            return chunks.get((int) (at >>> CHUNK_SHIFT)).getLong((int) (at & CHUNK_MASK));
+        }
+
+        void putLong(long at, long value) {
+            chunks.get((int) (at >>> CHUNK_SHIFT)).putLong((int) (at & CHUNK_MASK), value);
+        }
+
+        void close() {
+            chunks.clear();
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not close visited spill file", e);
+            }
+        }
+    }
+}
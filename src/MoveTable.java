@@ -0,0 +1,119 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed single-cell slides for one board geometry.
+ *
+ * Entries are indexed by (piece type, top-left cell, direction). Each holds the piece's
+ * new cell mask, the cells it newly covers, and the target top-left. A slide is legal iff
+ * its covered mask misses the occupancy bitboard; slides off the board have every bit set
+ * in covered, so they always fail that test. Applying a slide is an XOR of flip into the
+ * occupancy and of topLeftFlip into the type's top-left mask.
+ *
+ * Tables are immutable and shared per (rows, cols).
+ */
+public final class MoveTable {
+    private static final ConcurrentHashMap<Integer, MoveTable> CACHE = new ConcurrentHashMap<>();
+    private static final int NUM_DIRS = 4;
+
+    private final int numCells;
+    private final long[] pieceMask;   // by type * numCells + cell
+    private final long[] newMask;     // by entry
+    private final long[] covered;
+    private final long[] flip;
+    private final long[] topLeftFlip;
+    private final int[] target;
+
+    public static MoveTable forGeometry(int rows, int cols) {
+        return CACHE.computeIfAbsent(rows * 1024 + cols, k -> new MoveTable(rows, cols));
+    }
+
+    private MoveTable(int rows, int cols) {
+        numCells = rows * cols;
+        if (numCells > 64) throw new IllegalArgumentException("MoveTable supports at most 64 cells: " + numCells);
+
+        long firstCol = 0L;
+        long lastCol = 0L;
+        for (int r = 0; r < rows; r++) {
+            firstCol |= 1L << (r * cols + cols - 1);
+            lastCol |= 1L << (r * cols);
+        }
+        long lastRow = (1L << cols) - 1;
+        long firstRow = lastRow << ((rows - 1) * cols);
+        long[] edge = {firstRow, lastRow, firstCol, lastCol};
+        int[] delta = {cols, -cols, 1, -1};
+
+        int entries = PackedBoard.NUM_TYPES * numCells * NUM_DIRS;
+        pieceMask = new long[PackedBoard.NUM_TYPES * numCells];
+        newMask = new long[entries];
+        covered = new long[entries];
+        flip = new long[entries];
+        topLeftFlip = new long[entries];
+        target = new int[entries];
+
+        for (int type = 0; type < PackedBoard.NUM_TYPES; type++) {
+            boolean wide = type == Piece.TWO_BY_TWO || type == Piece.ONE_BY_TWO;
+            boolean tall = type == Piece.TWO_BY_TWO || type == Piece.TWO_BY_ONE;
+            for (int cell = 0; cell < numCells; cell++) {
+                long bit = 1L << cell;
+                boolean fits = !(wide && (bit & lastCol) != 0) && !(tall && (bit & lastRow) != 0);
+                long old = 0L;
+                if (fits) {
+                    old = bit;
+                    if (wide) old |= bit >>> 1;
+                    if (tall) old |= (old >>> cols);
+                }
+                pieceMask[type * numCells + cell] = old;
+
+                for (int d = 0; d < NUM_DIRS; d++) {
+                    int e = index(type, cell, d);
+                    if (!fits || (old & edge[d]) != 0) {
+                        covered[e] = -1L;
+                        target[e] = -1;
+                        continue;
+                    }
+                    long moved = d == PackedBoard.UP ? old << cols
+                            : d == PackedBoard.DOWN ? old >>> cols
+                            : d == PackedBoard.LEFT ? old << 1
+                            : old >>> 1;
+                    newMask[e] = moved;
+                    covered[e] = moved & ~old;
+                    flip[e] = old ^ moved;
+                    target[e] = cell + delta[d];
+                    topLeftFlip[e] = bit ^ (1L << target[e]);
+                }
+            }
+        }
+    }
+
+    public int index(int type, int topLeft, int dir) {
+        return ((type * numCells + topLeft) << 2) | dir;
+    }
+
+    /** Cells covered by a piece of the type at topLeft, or 0 if it would not fit there. */
+    public long pieceMask(int type, int topLeft) {
+        return pieceMask[type * numCells + topLeft];
+    }
+
+    public boolean isLegal(int entry, long occupancy) {
+        return (covered[entry] & occupancy) == 0;
+    }
+
+    public long newMask(int entry) {
+        return newMask[entry];
+    }
+
+    /** XOR into the occupancy bitboard to apply the slide. */
+    public long flip(int entry) {
+        return flip[entry];
+    }
+
+    /** XOR into the piece type's top-left mask to apply the slide. */
+    public long topLeftFlip(int entry) {
+        return topLeftFlip[entry];
+    }
+
+    /** The top-left cell after the slide, or -1 if the slide leaves the board. */
+    public int target(int entry) {
+        return target[entry];
+    }
+}
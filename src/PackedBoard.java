@@ -0,0 +1,536 @@
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Primitive view of a board's geometry and piece inventory.
+ *
+ * A state is a long[NUM_TYPES] holding one mask of top-left cells per piece type
+ * (indexed by the Piece type constants). Identical pieces are interchangeable, so
+ * the masks are already canonical, and moves can be generated and tested with
+ * shifts against the edge masks without allocating anything.
+ */
+public final class PackedBoard {
+    public static final int NUM_TYPES = 4;
+
+    // Direction indices, in the same order as BFS.DIRS and the move encoding
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+    private static final char[] DIR_CHARS = {'u', 'd', 'l', 'r'};
+
+    private final int numRows;
+    private final int numCols;
+    private final long firstColMask;
+    private final long lastColMask;
+    private final long firstRowMask;
+    private final long lastRowMask;
+    private final long boardMask;
+    private final int goalSquare;
+    private final int[] counts = new int[NUM_TYPES];
+    private final int numEmpty;
+    private final MoveTable moveTable;
+    private final long[] columnMasks; // by bit position within a row
+    // Bulk move generation, by type * 4 + dir: top-lefts whose slide stays on the board, and
+    // the offsets from the top-left of the two cells the slide enters (the same one twice for
+    // a side one cell wide)
+    private final long[] slideMasks = new long[NUM_TYPES * 4];
+    private final int[] enterFirst = new int[NUM_TYPES * 4];
+    private final int[] enterSecond = new int[NUM_TYPES * 4];
+
+    public PackedBoard(Board board) {
+        this(board, board.getNumRows(), board.getNumCols(), countTypes(board), board.getGoalSquare());
+    }
+
+    /** For a geometry and inventory known without a Board, e.g. read from a solution file. */
+    public PackedBoard(int rows, int cols, int[] counts, int goalSquare) {
+        this(new Board(rows, cols), rows, cols, counts, goalSquare);
+    }
+
+    private PackedBoard(Board geometry, int rows, int cols, int[] counts, int goalSquare) {
+        if (rows * cols > 64) throw new IllegalArgumentException("PackedBoard supports at most 64 cells: " + rows * cols);
+        numRows = rows;
+        numCols = cols;
+        firstColMask = geometry.FIRST_COL_MASK;
+        lastColMask = geometry.LAST_COL_MASK;
+        firstRowMask = geometry.FIRST_ROW_MASK;
+        lastRowMask = geometry.LAST_ROW_MASK;
+        this.goalSquare = goalSquare;
+        int cells = numRows * numCols;
+        boardMask = cells >= 64 ? -1L : (1L << cells) - 1;
+        int covered = 0;
+        for (int t = 0; t < NUM_TYPES; t++) {
+            this.counts[t] = counts[t];
+            covered += counts[t] * Long.bitCount(cellsOf(t, 1L << (cells - 1)));
+        }
+        numEmpty = cells - covered;
+        moveTable = MoveTable.forGeometry(numRows, numCols);
+        columnMasks = new long[numCols];
+        for (int q = 0; q < numCols; q++) {
+            for (int r = 0; r < numRows; r++) columnMasks[q] |= 1L << (r * numCols + q);
+        }
+        initSlides();
+    }
+
+    private void initSlides() {
+        for (int type = 0; type < NUM_TYPES; type++) {
+            int height = type == Piece.TWO_BY_TWO || type == Piece.TWO_BY_ONE ? 2 : 1;
+            int width = type == Piece.TWO_BY_TWO || type == Piece.ONE_BY_TWO ? 2 : 1;
+            // Cell numbers grow up and to the left, so a piece covers rows r-height+1..r, columns q-width+1..q
+            enterFirst[type * 4 + UP] = numCols;
+            enterSecond[type * 4 + UP] = numCols - width + 1;
+            enterFirst[type * 4 + DOWN] = -height * numCols;
+            enterSecond[type * 4 + DOWN] = -height * numCols - width + 1;
+            enterFirst[type * 4 + LEFT] = 1;
+            enterSecond[type * 4 + LEFT] = 1 - (height - 1) * numCols;
+            enterFirst[type * 4 + RIGHT] = -width;
+            enterSecond[type * 4 + RIGHT] = -width - (height - 1) * numCols;
+            for (int r = height - 1; r < numRows; r++) {
+                for (int q = width - 1; q < numCols; q++) {
+                    long bit = 1L << (r * numCols + q);
+                    if (r + 1 < numRows) slideMasks[type * 4 + UP] |= bit;
+                    if (r - height >= 0) slideMasks[type * 4 + DOWN] |= bit;
+                    if (q + 1 < numCols) slideMasks[type * 4 + LEFT] |= bit;
+                    if (q - width >= 0) slideMasks[type * 4 + RIGHT] |= bit;
+                }
+            }
+        }
+    }
+
+    private static int[] countTypes(Board board) {
+        int[] counts = new int[NUM_TYPES];
+        for (Piece piece : board.getPieces()) counts[piece.getType()]++;
+        return counts;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    public int getGoalSquare() {
+        return goalSquare;
+    }
+
+    public int getCount(int type) {
+        return counts[type];
+    }
+
+    public int getNumEmpty() {
+        return numEmpty;
+    }
+
+    public long getBoardMask() {
+        return boardMask;
+    }
+
+    public MoveTable getMoveTable() {
+        return moveTable;
+    }
+
+    public void load(Board board, long[] state) {
+        for (int t = 0; t < NUM_TYPES; t++) state[t] = 0L;
+        for (Piece piece : board.getPieces()) {
+            state[piece.getType()] |= 1L << piece.getTopLeft();
+        }
+    }
+
+    /** Cells covered by pieces of the given type whose top-left cells are in topLefts. */
+    public long cellsOf(int type, long topLefts) {
+        return switch (type) {
+            case Piece.TWO_BY_TWO -> topLefts | (topLefts >>> 1) | (topLefts >>> numCols) | (topLefts >>> (numCols + 1));
+            case Piece.TWO_BY_ONE -> topLefts | (topLefts >>> numCols);
+            case Piece.ONE_BY_TWO -> topLefts | (topLefts >>> 1);
+            case Piece.ONE_BY_ONE -> topLefts;
+            default -> throw new IllegalArgumentException("Unknown piece type: " + type);
+        };
+    }
+
+    public long occupancy(long[] state) {
+        long occ = 0L;
+        for (int t = 0; t < NUM_TYPES; t++) occ |= cellsOf(t, state[t]);
+        return occ;
+    }
+
+    /** True if a piece covering mask would leave the board (or wrap a row) moving in dir. */
+    public boolean isTouching(long mask, int dir) {
+        long edge = switch (dir) {
+            case UP -> firstRowMask;
+            case DOWN -> lastRowMask;
+            case LEFT -> firstColMask;
+            case RIGHT -> lastColMask;
+            default -> throw new IllegalArgumentException("Bad dir: " + dir);
+        };
+        return (mask & edge) != 0;
+    }
+
+    public long shift(long mask, int dir) {
+        return switch (dir) {
+            case UP -> mask << numCols;
+            case DOWN -> mask >>> numCols;
+            case LEFT -> mask << 1;
+            case RIGHT -> mask >>> 1;
+            default -> throw new IllegalArgumentException("Bad dir: " + dir);
+        };
+    }
+
+    public int topLeftDelta(int dir) {
+        return switch (dir) {
+            case UP -> numCols;
+            case DOWN -> -numCols;
+            case LEFT -> 1;
+            case RIGHT -> -1;
+            default -> throw new IllegalArgumentException("Bad dir: " + dir);
+        };
+    }
+
+    public boolean isGoal(long[] state) {
+        return (state[Piece.TWO_BY_TWO] & (1L << goalSquare)) != 0;
+    }
+
+    /** Upper bound on the number of successors of any state: four per piece. */
+    public int maxSuccessors() {
+        int pieces = 0;
+        for (int t = 0; t < NUM_TYPES; t++) pieces += counts[t];
+        return 4 * pieces;
+    }
+
+    /** Upper bound on the successors of a state that are new: each move must enter an empty cell. */
+    public int maxNewSuccessors() {
+        return Math.min(maxSuccessors(), 4 * numEmpty);
+    }
+
+    /** Empty cells of the board. */
+    public long emptyCells(long[] state) {
+        return boardMask & ~occupancy(state);
+    }
+
+    /**
+     * Top-lefts of the pieces of the type that can slide one cell in dir: those whose slide
+     * stays on the board, ANDed with the empty cells rotated back by each entered cell's
+     * offset. Every piece of the type is tested at once. The slide mask keeps every entered
+     * cell on the board, so the rotations never bring a wrapped bit into play.
+     */
+    public long slidable(long[] state, long empty, int type, int dir) {
+        return slidable(state, empty, type * 4 + dir);
+    }
+
+    private long slidable(long[] state, long empty, int slide) {
+        return state[slide >>> 2] & slideMasks[slide]
+                & Long.rotateRight(empty, enterFirst[slide]) & Long.rotateRight(empty, enterSecond[slide]);
+    }
+
+    /**
+     * Bulk move generation: masks[type * 4 + dir] gets slidable(state, ..., type, dir) for
+     * every type and direction. The cells a slide enters depend only on the piece's height
+     * and width, so the whole move set comes from twelve shifts of the empty mask and a few
+     * ANDs, whatever the number of pieces. Returns the number of moves.
+     */
+    public int moveMasks(long[] state, long[] masks) {
+        fillMoveMasks(state, masks, 0);
+        int n = 0;
+        for (int slide = 0; slide < NUM_TYPES * 4; slide++) n += Long.bitCount(masks[slide]);
+        return n;
+    }
+
+    private void fillMoveMasks(long[] state, long[] masks, int at) {
+        long empty = emptyCells(state);
+        // Bit t of each is set if the cells entered from top-left t are empty; the slide
+        // masks keep those cells on the board, so plain shifts never wrap a row
+        long up = empty >>> numCols;
+        long upWide = up & (empty >>> (numCols - 1));
+        long down = empty << numCols;
+        long downWide = down & (empty << (numCols + 1));
+        long downTall = empty << (2 * numCols);
+        long downBig = downTall & (empty << (2 * numCols + 1));
+        long left = empty >>> 1;
+        long leftTall = left & (empty << (numCols - 1));
+        long right = empty << 1;
+        long rightTall = right & (empty << (numCols + 1));
+        long rightWide = empty << 2;
+        long rightBig = rightWide & (empty << (numCols + 2));
+
+        long big = state[Piece.TWO_BY_TWO];
+        masks[at] = big & slideMasks[0] & upWide;
+        masks[at + 1] = big & slideMasks[1] & downBig;
+        masks[at + 2] = big & slideMasks[2] & leftTall;
+        masks[at + 3] = big & slideMasks[3] & rightBig;
+        long tall = state[Piece.TWO_BY_ONE];
+        masks[at + 4] = tall & slideMasks[4] & up;
+        masks[at + 5] = tall & slideMasks[5] & downTall;
+        masks[at + 6] = tall & slideMasks[6] & leftTall;
+        masks[at + 7] = tall & slideMasks[7] & rightTall;
+        long wide = state[Piece.ONE_BY_TWO];
+        masks[at + 8] = wide & slideMasks[8] & upWide;
+        masks[at + 9] = wide & slideMasks[9] & downWide;
+        masks[at + 10] = wide & slideMasks[10] & left;
+        masks[at + 11] = wide & slideMasks[11] & rightWide;
+        long single = state[Piece.ONE_BY_ONE];
+        masks[at + 12] = single & slideMasks[12] & up;
+        masks[at + 13] = single & slideMasks[13] & down;
+        masks[at + 14] = single & slideMasks[14] & left;
+        masks[at + 15] = single & slideMasks[15] & right;
+    }
+
+    /** Longs successorStates needs in out: NUM_TYPES per successor, plus room for the move masks. */
+    public int successorStatesLength() {
+        return maxSuccessors() * NUM_TYPES + NUM_TYPES * 4;
+    }
+
+    /**
+     * Writes every successor of state into out, NUM_TYPES longs each, and returns how many
+     * there are. out needs successorStatesLength() longs: the move masks go at the end, past
+     * anything the successors can reach, so nothing is allocated.
+     */
+    public int successorStates(long[] state, long[] out) {
+        int masks = out.length - NUM_TYPES * 4;
+        fillMoveMasks(state, out, masks);
+        int n = 0;
+        for (int slide = 0; slide < NUM_TYPES * 4; slide++) {
+            long rest = out[masks + slide];
+            if (rest == 0) continue;
+            int type = slide >>> 2;
+            int delta = topLeftDelta(slide & 3);
+            for (; rest != 0; rest &= rest - 1) {
+                long bit = rest & -rest;
+                int at = n++ * NUM_TYPES;
+                out[at] = state[0];
+                out[at + 1] = state[1];
+                out[at + 2] = state[2];
+                out[at + 3] = state[3];
+                out[at + type] ^= bit | Long.rotateLeft(bit, delta);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes the code and BFS move code of every successor of state, returning how many there
+     * are. state is left unchanged. Needs single-long codes.
+     */
+    public int successors(long[] state, StateCodec codec, long[] codes, int[] moves) {
+        int n = 0;
+        long empty = emptyCells(state);
+        for (int type = 0; type < NUM_TYPES; type++) {
+            long saved = state[type];
+            for (int d = 0; d < 4; d++) {
+                int delta = topLeftDelta(d);
+                for (long rest = slidable(state, empty, type, d); rest != 0; rest &= rest - 1) {
+                    int fromTopLeft = Long.numberOfTrailingZeros(rest);
+                    state[type] = saved ^ (1L << fromTopLeft) ^ (1L << (fromTopLeft + delta));
+                    codes[n] = codec.encode(state);
+                    moves[n] = BFS.packMove(type, fromTopLeft, d);
+                    n++;
+                }
+                state[type] = saved;
+            }
+        }
+        return n;
+    }
+
+    /** Applies a BFS move code to state in place. The move is assumed to be legal. */
+    public void applyMove(long[] state, int moveCode) {
+        int type = moveCode & 3;
+        int fromTopLeft = moveCode >>> 4;
+        int d = (moveCode >>> 2) & 3;
+        state[type] ^= (1L << fromTopLeft) ^ (1L << (fromTopLeft + topLeftDelta(d)));
+    }
+
+    /*
+     * Macro moves: one piece sliding any number of cells, around corners, through space that
+     * is empty while it moves. Their codes are type | from << 2 | to << 8, distinct from the
+     * single-step layout used by BFS.packMove.
+     */
+
+    public static int packMacroMove(int type, int fromTopLeft, int toTopLeft) {
+        return (type & 3) | (fromTopLeft << 2) | (toTopLeft << 8);
+    }
+
+    public static int macroFrom(int macroCode) {
+        return (macroCode >>> 2) & 63;
+    }
+
+    public static int macroTo(int macroCode) {
+        return macroCode >>> 8;
+    }
+
+    /** Upper bound on the macro moves of any state: each piece can end on at most every cell. */
+    public int maxMacroMoves() {
+        return maxSuccessors() / 4 * numRows * numCols;
+    }
+
+    /**
+     * Writes the macro code of every macro move from state, returning how many there are.
+     * Each piece is lifted off the board and flood-filled over its reachable top-lefts one
+     * BFS level at a time, with the levels held as bit masks.
+     */
+    public int macroMoves(long[] state, int[] moves) {
+        int n = 0;
+        long occ = occupancy(state);
+        for (int type = 0; type < NUM_TYPES; type++) {
+            for (long rest = state[type]; rest != 0; rest &= rest - 1) {
+                int from = Long.numberOfTrailingZeros(rest);
+                long others = occ ^ moveTable.pieceMask(type, from);
+                long reached = 1L << from;
+                for (long frontier = reached; frontier != 0; ) {
+                    long next = 0L;
+                    for (long f = frontier; f != 0; f &= f - 1) {
+                        int entry = moveTable.index(type, Long.numberOfTrailingZeros(f), 0);
+                        for (int d = 0; d < 4; d++, entry++) {
+                            if (!moveTable.isLegal(entry, others)) continue;
+                            next |= 1L << moveTable.target(entry);
+                        }
+                    }
+                    frontier = next & ~reached;
+                    reached |= frontier;
+                }
+                for (long to = reached & ~(1L << from); to != 0; to &= to - 1) {
+                    moves[n++] = packMacroMove(type, from, Long.numberOfTrailingZeros(to));
+                }
+            }
+        }
+        return n;
+    }
+
+    public void applyMacroMove(long[] state, int macroCode) {
+        state[macroCode & 3] ^= (1L << macroFrom(macroCode)) ^ (1L << macroTo(macroCode));
+    }
+
+    /** A shortest sequence of single-cell steps that carries out macroCode from state. */
+    public char[] macroPath(long[] state, int macroCode) {
+        int type = macroCode & 3;
+        int from = macroFrom(macroCode);
+        int to = macroTo(macroCode);
+        long others = occupancy(state) ^ moveTable.pieceMask(type, from);
+        int cells = numRows * numCols;
+        int[] stepInto = new int[cells];
+        Arrays.fill(stepInto, -1);
+        int[] queue = new int[cells];
+        int tail = 0;
+        queue[tail++] = from;
+        long reached = 1L << from;
+        for (int head = 0; head < tail && (reached & (1L << to)) == 0; head++) {
+            int entry = moveTable.index(type, queue[head], 0);
+            for (int d = 0; d < 4; d++, entry++) {
+                if (!moveTable.isLegal(entry, others)) continue;
+                int t = moveTable.target(entry);
+                if ((reached & (1L << t)) != 0) continue;
+                reached |= 1L << t;
+                stepInto[t] = d;
+                queue[tail++] = t;
+            }
+        }
+        if ((reached & (1L << to)) == 0) throw new IllegalArgumentException("Macro move is not legal in this state");
+
+        StringBuilder path = new StringBuilder();
+        for (int at = to; at != from; at -= topLeftDelta(stepInto[at])) path.append(DIR_CHARS[stepInto[at]]);
+        return path.reverse().toString().toCharArray();
+    }
+
+    public int mirrorMacroMove(int macroCode) {
+        int type = macroCode & 3;
+        return packMacroMove(type, mirrorTopLeft(type, macroFrom(macroCode)), mirrorTopLeft(type, macroTo(macroCode)));
+    }
+
+    /** Mirrors a cell mask left-right: each column moves to its mirror in one mask-and-shift. */
+    public long mirrorCells(long mask) {
+        long mirrored = 0L;
+        for (int q = 0; q < numCols; q++) {
+            int shift = numCols - 1 - 2 * q;
+            long column = mask & columnMasks[q];
+            mirrored |= shift >= 0 ? column << shift : column >>> -shift;
+        }
+        return mirrored;
+    }
+
+    /** Writes the left-right mirror of state into out. */
+    public void mirror(long[] state, long[] out) {
+        for (int type = 0; type < NUM_TYPES; type++) {
+            long topLefts = mirrorCells(state[type]);
+            // A two-wide piece's top-left is its left cell, which is the right one after mirroring
+            out[type] = isWide(type) ? topLefts << 1 : topLefts;
+        }
+    }
+
+    public int mirrorTopLeft(int type, int topLeft) {
+        int q = topLeft % numCols;
+        return topLeft - q + (numCols - 1 - q) + (isWide(type) ? 1 : 0);
+    }
+
+    /** The move that does to the mirrored state what moveCode does to the original. */
+    public int mirrorMove(int moveCode) {
+        int type = moveCode & 3;
+        int d = (moveCode >>> 2) & 3;
+        int mirroredDir = d == LEFT ? RIGHT : d == RIGHT ? LEFT : d;
+        return type | (mirroredDir << 2) | (mirrorTopLeft(type, moveCode >>> 4) << 4);
+    }
+
+    /** True if mirroring maps goal states to goal states, so a state and its mirror are equally far from a goal. */
+    public boolean isMirrorSymmetric() {
+        return mirrorTopLeft(Piece.TWO_BY_TWO, goalSquare) == goalSquare;
+    }
+
+    private static boolean isWide(int type) {
+        return type == Piece.TWO_BY_TWO || type == Piece.ONE_BY_TWO;
+    }
+
+    /** True if a piece of the type with its top-left on the single cell bit stays on the board. */
+    public boolean fits(int type, long bit) {
+        boolean wide = type == Piece.TWO_BY_TWO || type == Piece.ONE_BY_TWO;
+        boolean tall = type == Piece.TWO_BY_TWO || type == Piece.TWO_BY_ONE;
+        if (wide && (bit & lastColMask) != 0) return false;
+        return !tall || (bit & lastRowMask) == 0;
+    }
+
+    /**
+     * Calls action with every placement of this inventory that has a 2x2 on the goal square,
+     * whether or not it is reachable from any particular start. The array passed to action
+     * is reused between calls. Stops early, returning false, as soon as action returns false.
+     */
+    public boolean forEachGoalState(Predicate<long[]> action) {
+        long goal = 1L << goalSquare;
+        if (counts[Piece.TWO_BY_TWO] == 0 || !fits(Piece.TWO_BY_TWO, goal)) return true;
+        long[] state = new long[NUM_TYPES];
+        int[] remaining = counts.clone();
+        remaining[Piece.TWO_BY_TWO]--;
+        state[Piece.TWO_BY_TWO] = goal;
+        return place(Long.highestOneBit(boardMask), cellsOf(Piece.TWO_BY_TWO, goal), remaining, numEmpty, state, action);
+    }
+
+    private boolean place(long bit, long covered, int[] remaining, int emptyLeft, long[] state, Predicate<long[]> action) {
+        // Pieces only cover cells at or after their top-left in reading order, so fill the next free cell
+        while (bit != 0 && (covered & bit) != 0) bit >>>= 1;
+        if (bit == 0) return action.test(state);
+        if (emptyLeft > 0 && !place(bit >>> 1, covered, remaining, emptyLeft - 1, state, action)) return false;
+        for (int t = 0; t < NUM_TYPES; t++) {
+            if (remaining[t] == 0 || !fits(t, bit)) continue;
+            long cells = cellsOf(t, bit);
+            if ((cells & covered) != 0) continue;
+            remaining[t]--;
+            state[t] |= bit;
+            boolean more = place(bit >>> 1, covered | cells, remaining, emptyLeft, state, action);
+            state[t] ^= bit;
+            remaining[t]++;
+            if (!more) return false;
+        }
+        return true;
+    }
+
+    /** Builds a full Board for the state, e.g. for display. Pieces are ordered by type, then cell. */
+    public Board toBoard(long[] state) {
+        Board board = new Board(numRows, numCols);
+        for (int t = 0; t < NUM_TYPES; t++) {
+            int height = (t == Piece.TWO_BY_TWO || t == Piece.TWO_BY_ONE) ? 2 : 1;
+            int width = (t == Piece.TWO_BY_TWO || t == Piece.ONE_BY_TWO) ? 2 : 1;
+            for (long rest = state[t]; rest != 0; rest &= rest - 1) {
+                int topLeft = Long.numberOfTrailingZeros(rest);
+                board.addPiece(new Piece(topLeft, height, width, board));
+            }
+        }
+        board.setGoalSquare(goalSquare);
+        return board;
+    }
+}
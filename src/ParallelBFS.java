@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Level-synchronous BFS across a fixed pool of worker threads.
+ *
+ * Each layer's frontier is a long[] of state codes, cut into chunks that the workers
+ * claim from a shared counter. New states go into a ConcurrentVisitedSet and into the
+ * claiming worker's own output list, and the lists are concatenated into the next
+ * frontier once the layer is done. Every state of a layer sits at the same depth, so
+ * any goal found while expanding it gives a shortest solution.
+ *
+ * The visited set is sized per layer from the branching factor measured so far, with
+ * headroom. Workers reserve a chunk's worst case from the set's headroom before expanding
+ * it and hand back chunks that do not fit; those run in another round after a resize,
+ * so a wide layer grows the table only as far as it actually needs.
+ */
+public class ParallelBFS {
+    private static final int CHUNK = 1024;
+    private static final int ROOT_MOVE = -1;
+    private static final long NO_GOAL = -1L;
+    private static final double HEADROOM = 1.5; // Sizing margin over the measured branching factor
+
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final SolverOptions options;
+    private ConcurrentVisitedSet visited;
+
+    public ParallelBFS(Board board) {
+        this(board, new SolverOptions());
+    }
+
+    public ParallelBFS(Board board, SolverOptions options) {
+        packed = new PackedBoard(board);
+        codec = new StateCodec(packed);
+        if (!codec.fitsInLong()) throw new IllegalArgumentException("ParallelBFS needs single-long state codes");
+        this.options = options;
+    }
+
+    public ConcurrentVisitedSet getVisited() {
+        return visited;
+    }
+
+    public ArrayList<BFS.Move> solve(Board start) {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(start, state);
+        long startCode = codec.encode(state);
+        visited = new ConcurrentVisitedSet(options.expectedStates);
+        visited.add(startCode, ROOT_MOVE);
+        visited.addToSize(1);
+        if (packed.isGoal(state)) return new ArrayList<>();
+
+        SolverMonitor monitor = new SolverMonitor(options, null);
+        int threads = Math.max(1, options.threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "klotski-bfs");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            long[] frontier = {startCode};
+            int frontierSize = 1;
+            double branching = packed.maxNewSuccessors(); // New states per expanded state, measured from the first layer on
+            AtomicLong goal = new AtomicLong(NO_GOAL);
+            for (int depth = 0; frontierSize > 0; depth++) {
+                monitor.startLayer(depth, frontierSize);
+                int numChunks = (frontierSize + CHUNK - 1) / CHUNK;
+                int[] pending = new int[numChunks];
+                for (int c = 0; c < numChunks; c++) pending[c] = c;
+                int numPending = numChunks;
+                long pendingStates = frontierSize;
+                ArrayList<LongList> outputs = new ArrayList<>();
+                int nextSize = 0;
+
+                // Rounds of expansion, each after making room for what is left of the layer
+                while (numPending > 0) {
+                    // At least one chunk per busy worker always fits, so every round makes progress
+                    long chunkWorst = Math.min(CHUNK, pendingStates) * packed.maxNewSuccessors();
+                    visited.ensureRoomFor((long) (pendingStates * branching * HEADROOM) + Math.min(threads, numPending) * chunkWorst);
+                    AtomicLong room = new AtomicLong(visited.headroom());
+                    AtomicInteger nextChunk = new AtomicInteger();
+                    ConcurrentLinkedQueue<Integer> deferred = new ConcurrentLinkedQueue<>();
+                    ArrayList<Future<LongList>> results = new ArrayList<>(threads);
+                    for (int w = 0; w < threads; w++) {
+                        long[] layer = frontier;
+                        int layerSize = frontierSize;
+                        int[] chunks = pending;
+                        int count = numPending;
+                        results.add(pool.submit(() -> expandChunks(layer, layerSize, chunks, count, nextChunk, room, deferred, goal)));
+                    }
+
+                    int added = 0;
+                    for (Future<LongList> result : results) {
+                        LongList out = join(result);
+                        outputs.add(out);
+                        added += out.size;
+                    }
+                    visited.addToSize(added);
+                    nextSize += added;
+                    if (options.cancellation != null) options.cancellation.throwIfCancelled(); // Before retrying what was skipped
+
+                    // Chunks handed back, then any nobody claimed, go into the next round
+                    int[] left = new int[numPending];
+                    int numLeft = 0;
+                    for (Integer chunk : deferred) left[numLeft++] = chunk;
+                    for (int k = Math.min(nextChunk.get(), numPending); k < numPending; k++) left[numLeft++] = pending[k];
+                    long leftStates = 0;
+                    for (int k = 0; k < numLeft; k++) leftStates += Math.min(CHUNK, frontierSize - left[k] * CHUNK);
+                    long expandedSoFar = frontierSize - leftStates;
+                    if (expandedSoFar > 0) branching = (double) nextSize / expandedSoFar;
+                    pending = left;
+                    numPending = numLeft;
+                    pendingStates = leftStates;
+                    if (goal.get() != NO_GOAL) break;
+                }
+                monitor.setVisitedSize(visited.size());
+                monitor.addExpanded(frontierSize - pendingStates);
+                monitor.endLayer();
+                if (goal.get() != NO_GOAL) return reconstructMoves(goal.get());
+
+                long[] next = new long[nextSize];
+                int at = 0;
+                for (LongList out : outputs) {
+                    System.arraycopy(out.values, 0, next, at, out.size);
+                    at += out.size;
+                }
+                frontier = next;
+                frontierSize = nextSize;
+            }
+            return null; // no solution
+        }
+        finally {
+            pool.shutdownNow();
+            monitor.finish();
+        }
+    }
+
+    /**
+     * Expands the chunks of chunks[0..count) claimed through nextChunk. Each chunk's worst
+     * case is taken from room first; a chunk that does not fit goes to deferred, and the
+     * worker stops so the layer can be resized.
+     */
+    private LongList expandChunks(long[] frontier, int frontierSize, int[] chunks, int count, AtomicInteger nextChunk,
+                                  AtomicLong room, ConcurrentLinkedQueue<Integer> deferred, AtomicLong goal) {
+        LongList out = new LongList();
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        long[] codes = new long[packed.maxSuccessors()];
+        int[] moves = new int[packed.maxSuccessors()];
+        int goalSquare = packed.getGoalSquare();
+
+        CancellationToken cancellation = options.cancellation;
+        int k;
+        while ((k = nextChunk.getAndIncrement()) < count) {
+            if (cancellation != null && cancellation.isCancelled()) break; // Reported after the round
+            int chunk = chunks[k];
+            int start = chunk * CHUNK;
+            int end = Math.min(frontierSize, start + CHUNK);
+            long worst = (long) (end - start) * packed.maxNewSuccessors();
+            if (room.addAndGet(-worst) < 0) {
+                room.addAndGet(worst);
+                deferred.add(chunk);
+                break;
+            }
+            int before = out.size;
+            for (int i = start; i < end; i++) {
+                codec.decode(frontier[i], state);
+                int n = packed.successors(state, codec, codes, moves);
+                for (int j = 0; j < n; j++) {
+                    if (!visited.add(codes[j], moves[j])) continue;
+                    out.add(codes[j]);
+                    // The parent was not a goal, so the successor is one only if its 2x2 just arrived
+                    int m = moves[j];
+                    if ((m & 3) == Piece.TWO_BY_TWO && (m >>> 4) + packed.topLeftDelta((m >>> 2) & 3) == goalSquare) {
+                        goal.compareAndSet(NO_GOAL, codes[j]);
+                    }
+                }
+            }
+            room.addAndGet(worst - (out.size - before));
+        }
+        return out;
+    }
+
+    private static LongList join(Future<LongList> result) {
+        try {
+            return result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Solver worker failed", e.getCause());
+        }
+    }
+
+    /** Walks back from the goal by undoing the stored move of each state until the root. */
+    private ArrayList<BFS.Move> reconstructMoves(long goalCode) {
+        ArrayList<BFS.Move> reversed = new ArrayList<>();
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        codec.decode(goalCode, state);
+        long code = goalCode;
+        while (true) {
+            int moveCode = visited.getMoveCode(code);
+            if (moveCode == ROOT_MOVE) break;
+            reversed.add(BFS.unpackMove(moveCode));
+            packed.applyMove(state, BFS.invertMoveCode(moveCode, packed));
+            code = codec.encode(state);
+        }
+
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    private static final class LongList {
+        long[] values = new long[256];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Lower bounds on the moves left, looked up from the occupancy right around the 2x2.
+ *
+ * A pattern is the 2x2's top-left plus which cells of the 4x4 window around it (the ring
+ * one cell out, clipped to the board) are covered by other pieces: at most 12 bits, so
+ * the table is one byte per (top-left, occupancy) pair. Each entry is the shortest
+ * optimal solution length over every solvable state showing that pattern, or DEAD if no
+ * solvable state shows it, which makes it both an admissible A* heuristic and a filter
+ * that drops positions no sequence of moves can solve.
+ *
+ * Built offline from HardestPositions for one geometry, inventory and goal, and saved
+ * next to the puzzle as a short header plus the table, so loading is one readAllBytes.
+ * Distances are in single-cell moves; the DEAD filter holds under any move metric.
+ *
+ * <pre>
+ *   echo "5x4 goal=6 2x2@18 2x1@19 2x1@16 2x1@11 2x1@8 1x2@10 1x1@6 1x1@5 1x1@3 1x1@0" &gt; donkey.txt
+ *   java PatternDatabase donkey.txt
+ * </pre>
+ * builds the database for the first puzzle in the file (see PuzzleFormat) and writes
+ * donkey.txt.pdb, which read() loads back.
+ */
+public final class PatternDatabase implements Heuristic {
+    public static final int DEAD = 0xFF;
+
+    private static final int WINDOW_BITS = 12;
+    private static final int MAX_DISTANCE = DEAD - 1;
+    private static final int MAGIC = 0x4B4C5044; // "KLPD"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * (4 + PackedBoard.NUM_TYPES + 2);
+
+    private final PackedBoard packed;
+    private final int[][] windowCells; // By 2x2 top-left; bit i of a pattern is windowCells[t][i]
+    private final byte[] data;
+    private final int offset; // Where the table starts in data
+
+    private PatternDatabase(PackedBoard packed, byte[] data, int offset) {
+        if (packed.getCount(Piece.TWO_BY_TWO) != 1) throw new IllegalArgumentException("PatternDatabase needs exactly one 2x2");
+        this.packed = packed;
+        this.data = data;
+        this.offset = offset;
+        windowCells = windows(packed);
+        if (data.length - offset != tableSize(packed)) throw new IllegalArgumentException("Pattern table has the wrong size");
+    }
+
+    public static PatternDatabase build(PackedBoard packed) {
+        return build(packed, new SolverOptions());
+    }
+
+    /** Runs the full backward search from the goal set and keeps each pattern's nearest state. */
+    public static PatternDatabase build(PackedBoard packed, SolverOptions options) {
+        byte[] table = new byte[tableSize(packed)];
+        Arrays.fill(table, (byte) DEAD);
+        PatternDatabase db = new PatternDatabase(packed, table, 0);
+        // States arrive in nondecreasing distance, so the first one seen for a pattern is its minimum
+        HardestPositions.find(packed, options, (state, distance) -> {
+            int index = db.index(state);
+            if (table[index] == (byte) DEAD) table[index] = (byte) Math.min(distance, MAX_DISTANCE);
+        });
+        return db;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) throw new IllegalArgumentException("Usage: PatternDatabase <puzzle file>");
+        Path puzzleFile = Path.of(args[0]);
+        String line = null;
+        for (String candidate : Files.readAllLines(puzzleFile)) {
+            String trimmed = candidate.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            line = trimmed;
+            break;
+        }
+        if (line == null) throw new IllegalArgumentException("No puzzle in " + puzzleFile);
+
+        long started = System.nanoTime();
+        PatternDatabase db = build(new PackedBoard(PuzzleFormat.parse(line).board));
+        Path out = pathFor(puzzleFile);
+        db.write(out);
+        System.out.printf("%,d of %,d patterns live, written to %s in %.1f s%n",
+                db.liveCount(), db.data.length - db.offset, out, (System.nanoTime() - started) / 1e9);
+    }
+
+    /** Where the database for a puzzle file is kept: alongside it, with ".pdb" appended. */
+    public static Path pathFor(Path puzzleFile) {
+        return puzzleFile.resolveSibling(puzzleFile.getFileName() + ".pdb");
+    }
+
+    public static PatternDatabase read(Path path) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_BYTES || header.getInt() != MAGIC) throw new IllegalArgumentException("Not a pattern database: " + path);
+        if (header.getInt() != VERSION) throw new IllegalArgumentException("Unsupported pattern database version: " + path);
+        int rows = header.getInt();
+        int cols = header.getInt();
+        int[] counts = new int[PackedBoard.NUM_TYPES];
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) counts[t] = header.getInt();
+        int goal = header.getInt();
+        int length = header.getInt();
+        if (length != bytes.length - HEADER_BYTES) throw new IllegalArgumentException("Truncated pattern database: " + path);
+        // The table is used in place, straight after the header
+        return new PatternDatabase(new PackedBoard(rows, cols, counts, goal), bytes, HEADER_BYTES);
+    }
+
+    public void write(Path path) {
+        int length = data.length - offset;
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + length);
+        out.putInt(MAGIC).putInt(VERSION).putInt(packed.getNumRows()).putInt(packed.getNumCols());
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) out.putInt(packed.getCount(t));
+        out.putInt(packed.getGoalSquare()).putInt(length);
+        out.put(data, offset, length);
+        try {
+            Files.write(path, out.array());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** True if this database was built for packed's geometry, inventory and goal. */
+    public boolean matches(PackedBoard other) {
+        if (other.getNumRows() != packed.getNumRows() || other.getNumCols() != packed.getNumCols()) return false;
+        if (other.getGoalSquare() != packed.getGoalSquare()) return false;
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) {
+            if (other.getCount(t) != packed.getCount(t)) return false;
+        }
+        return true;
+    }
+
+    /** Lower bound on the moves to a goal, or UNSOLVABLE if the pattern never occurs in a solvable state. */
+    @Override
+    public int estimate(PackedBoard board, long[] state) {
+        int value = data[offset + index(state)] & 0xFF;
+        return value == DEAD ? UNSOLVABLE : value;
+    }
+
+    /** True if no state with this one's pattern can reach a goal. */
+    public boolean isDead(long[] state) {
+        return (data[offset + index(state)] & 0xFF) == DEAD;
+    }
+
+    /** Patterns that occur in at least one solvable state. */
+    public int liveCount() {
+        int live = 0;
+        for (int i = offset; i < data.length; i++) {
+            if ((data[i] & 0xFF) != DEAD) live++;
+        }
+        return live;
+    }
+
+    public PackedBoard getPackedBoard() {
+        return packed;
+    }
+
+    private int index(long[] state) {
+        long big = state[Piece.TWO_BY_TWO];
+        int topLeft = Long.numberOfTrailingZeros(big);
+        long others = packed.occupancy(state) & ~packed.cellsOf(Piece.TWO_BY_TWO, big);
+        int[] cells = windowCells[topLeft];
+        int pattern = 0;
+        for (int i = 0; i < cells.length; i++) pattern |= (int) ((others >>> cells[i]) & 1L) << i;
+        return (topLeft << WINDOW_BITS) | pattern;
+    }
+
+    private static int tableSize(PackedBoard packed) {
+        return (packed.getNumRows() * packed.getNumCols()) << WINDOW_BITS;
+    }
+
+    /** For each top-left the 2x2 fits on, the board cells one step around it. */
+    private static int[][] windows(PackedBoard packed) {
+        int rows = packed.getNumRows();
+        int cols = packed.getNumCols();
+        int[][] windows = new int[rows * cols][];
+        int[] cells = new int[WINDOW_BITS];
+        for (int topLeft = 0; topLeft < rows * cols; topLeft++) {
+            int n = 0;
+            if (packed.fits(Piece.TWO_BY_TWO, 1L << topLeft)) {
+                // Cell numbers grow up and to the left, so the 2x2 covers rows r0-1..r0 and columns c0-1..c0
+                int r0 = topLeft / cols;
+                int c0 = topLeft % cols;
+                for (int r = r0 + 1; r >= r0 - 2; r--) {
+                    for (int c = c0 + 1; c >= c0 - 2; c--) {
+                        if (r < 0 || r >= rows || c < 0 || c >= cols) continue;
+                        if ((r == r0 || r == r0 - 1) && (c == c0 || c == c0 - 1)) continue;
+                        cells[n++] = r * cols + c;
+                    }
+                }
+            }
+            windows[topLeft] = Arrays.copyOf(cells, n);
+        }
+        return windows;
+    }
+}
@@ -1,5 +1,6 @@
 public class Piece {
-    private long bitboard;
+    private BitBoard cells; // On boards of up to 64 cells, built from location when asked for
+    private long location;  // The covered cells when !board.isWide(), updated in place by move(long)
     private final int type;
     private int topLeft;
     private final Board board;
@@ -28,14 +29,16 @@ public class Piece {
 
         this.topLeft = topLeft;
         this.board = board;
-        bitboard = 0L;
+        BitBoard cells = BitBoard.empty(nRows, nCols);
 
         for (int r = 0; r < height; r++) {
             for (int c = 0; c < width; c++) {
                 int cell = topLeft - r * nCols - c;
-                bitboard |= (1L << cell);
+                cells = cells.with(cell);
             }
         }
+        this.cells = cells;
+        if (!board.isWide()) location = cells.toLong();
 
         if (width == 2 && height == 2) type = TWO_BY_TWO;
         else if (width == 1 && height == 2) type = TWO_BY_ONE;
@@ -45,14 +48,25 @@ public class Piece {
     }
 
     public Piece(Piece other) {
-        bitboard = other.getLocation();
+        this(other, other.getBoard());
+    }
+
+    public Piece(Piece other, Board board) {
+        cells = other.cells;
+        location = other.location;
         type = other.getType();
         topLeft = other.getTopLeft();
-        board = other.getBoard();
+        this.board = board;
     }
 
+    /** Covered cells as a long. Only valid on boards of up to 64 cells; use getCells() otherwise. */
     public long getLocation() {
-        return bitboard;
+        return location;
+    }
+
+    public BitBoard getCells() {
+        if (cells == null) cells = new LongBitBoard(board.getNumRows(), board.getNumCols(), location);
+        return cells;
     }
 
     public int getType() {
@@ -72,6 +86,12 @@ public class Piece {
     }
 
     public void move(long bitboard) {
-        this.bitboard = bitboard;
+        location = bitboard;
+        cells = null;
+    }
+
+    public void move(BitBoard cells) {
+        this.cells = cells;
+        if (!board.isWide()) location = cells.toLong();
     }
 }
\ No newline at end of file
@@ -0,0 +1,327 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * One-line text and JSON forms of a puzzle, for batch files and generated layouts.
+ *
+ * Text: whitespace-separated tokens, e.g. the Donkey layout is
+ * <pre>
+ *   name=donkey 5x4 goal=6 2x2@18 2x1@19 2x1@16 2x1@11 2x1@8 1x2@10 1x1@6 1x1@5 1x1@3 1x1@0
+ * </pre>
+ * where RxC is the board size, HxW@cell a piece of height H and width W with its
+ * top-left on cell, and name= is optional.
+ *
+ * JSON: one object per line with the same content,
+ * <pre>
+ *   {"name":"donkey","rows":5,"cols":4,"goal":6,"pieces":[[18,2,2],[19,2,1],...]}
+ * </pre>
+ * each piece being [topLeft, height, width].
+ */
+public final class PuzzleFormat {
+    private PuzzleFormat() {}
+
+    /** A parsed puzzle; name is null if the line did not give one. */
+    public static final class Puzzle {
+        public final String name;
+        public final Board board;
+
+        public Puzzle(String name, Board board) {
+            this.name = name;
+            this.board = board;
+        }
+    }
+
+    /** Parses a text or JSON line, telling them apart by a leading '{'. */
+    public static Puzzle parse(String line) {
+        String trimmed = line.trim();
+        return trimmed.startsWith("{") ? parseJson(trimmed) : parseText(trimmed);
+    }
+
+    public static Puzzle parseText(String line) {
+        String name = null;
+        Board board = null;
+        Integer goal = null;
+        for (String token : line.trim().split("\\s+")) {
+            if (token.startsWith("name=")) {
+                name = token.substring(5);
+            }
+            else if (token.startsWith("goal=")) {
+                goal = parseInt(token.substring(5), token);
+            }
+            else if (token.contains("@")) {
+                if (board == null) throw new IllegalArgumentException("Board size must come before pieces: " + token);
+                int at = token.indexOf('@');
+                int[] size = parseSize(token.substring(0, at), token);
+                board.addPiece(new Piece(parseInt(token.substring(at + 1), token), size[0], size[1], board));
+            }
+            else {
+                if (board != null) throw new IllegalArgumentException("Board size given twice: " + token);
+                int[] size = parseSize(token, token);
+                board = new Board(size[0], size[1]);
+            }
+        }
+        if (board == null) throw new IllegalArgumentException("Missing board size");
+        if (goal == null) throw new IllegalArgumentException("Missing goal=");
+        setGoal(board, goal);
+        return new Puzzle(name, board);
+    }
+
+    public static Puzzle parseJson(String line) {
+        Object parsed = new JsonReader(line).readDocument();
+        if (!(parsed instanceof JsonObject object)) throw new IllegalArgumentException("Expected a JSON object");
+        Board board = new Board(object.getInt("rows"), object.getInt("cols"));
+        for (Object value : object.getArray("pieces")) {
+            if (!(value instanceof ArrayList<?> piece) || piece.size() != 3) {
+                throw new IllegalArgumentException("Pieces must be [topLeft, height, width]");
+            }
+            board.addPiece(new Piece(toInt(piece.get(0)), toInt(piece.get(1)), toInt(piece.get(2)), board));
+        }
+        setGoal(board, object.getInt("goal"));
+        Object name = object.get("name");
+        return new Puzzle(name instanceof String s ? s : null, board);
+    }
+
+    public static String toText(String name, Board board) {
+        StringBuilder sb = new StringBuilder();
+        if (name != null) sb.append("name=").append(name).append(' ');
+        sb.append(board.getNumRows()).append('x').append(board.getNumCols());
+        sb.append(" goal=").append(board.getGoalSquare());
+        for (Piece piece : board.getPieces()) {
+            sb.append(' ').append(heightOf(piece)).append('x').append(widthOf(piece)).append('@').append(piece.getTopLeft());
+        }
+        return sb.toString();
+    }
+
+    public static String toJson(String name, Board board) {
+        StringBuilder sb = new StringBuilder("{");
+        if (name != null) sb.append("\"name\":").append(quote(name)).append(',');
+        sb.append("\"rows\":").append(board.getNumRows());
+        sb.append(",\"cols\":").append(board.getNumCols());
+        sb.append(",\"goal\":").append(board.getGoalSquare());
+        sb.append(",\"pieces\":[");
+        ArrayList<Piece> pieces = board.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (i > 0) sb.append(',');
+            sb.append('[').append(piece.getTopLeft()).append(',').append(heightOf(piece)).append(',').append(widthOf(piece)).append(']');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /** A JSON string literal for s. */
+    public static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /** Sets the goal, which must be a cell the 2x2's top-left can occupy. */
+    private static void setGoal(Board board, int goal) {
+        int cols = board.getNumCols();
+        // The top-left needs a row below it and a column to its right
+        if (goal < 0 || goal >= board.getNumRows() * cols || goal / cols < 1 || goal % cols < 1) {
+            throw new IllegalArgumentException("Goal " + goal + " is not a 2x2 top-left on a "
+                    + board.getNumRows() + "x" + cols + " board");
+        }
+        board.setGoalSquare(goal);
+    }
+
+    private static int heightOf(Piece piece) {
+        return piece.getType() == Piece.TWO_BY_TWO || piece.getType() == Piece.TWO_BY_ONE ? 2 : 1;
+    }
+
+    private static int widthOf(Piece piece) {
+        return piece.getType() == Piece.TWO_BY_TWO || piece.getType() == Piece.ONE_BY_TWO ? 2 : 1;
+    }
+
+    private static int[] parseSize(String s, String token) {
+        int x = s.indexOf('x');
+        if (x < 0) throw new IllegalArgumentException("Expected RxC: " + token);
+        return new int[] {parseInt(s.substring(0, x), token), parseInt(s.substring(x + 1), token)};
+    }
+
+    private static int parseInt(String s, String token) {
+        try {
+            return Integer.parseInt(s);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number in " + token, e);
+        }
+    }
+
+    private static int toInt(Object value) {
+        if (!(value instanceof Long n) || n != n.intValue()) throw new IllegalArgumentException("Expected an integer: " + value);
+        return (int) (long) n;
+    }
+
+    private static final class JsonObject {
+        private final HashMap<String, Object> fields = new HashMap<>();
+
+        Object get(String key) {
+            return fields.get(key);
+        }
+
+        void put(String key, Object value) {
+            fields.put(key, value);
+        }
+
+        int getInt(String key) {
+            if (!fields.containsKey(key)) throw new IllegalArgumentException("Missing \"" + key + "\"");
+            return toInt(fields.get(key));
+        }
+
+        ArrayList<?> getArray(String key) {
+            if (!(get(key) instanceof ArrayList<?> array)) throw new IllegalArgumentException("Expected an array for \"" + key + "\"");
+            return array;
+        }
+    }
+
+    /** Just enough JSON for the puzzle schema: objects, arrays, strings, integers, true/false/null. */
+    private static final class JsonReader {
+        private final String s;
+        private int pos;
+
+        JsonReader(String s) {
+            this.s = s;
+        }
+
+        /** The single value making up the whole input; anything after it is an error. */
+        Object readDocument() {
+            Object value = readValue();
+            skipSpace();
+            if (pos < s.length()) throw error("Unexpected text after the value");
+            return value;
+        }
+
+        Object readValue() {
+            skipSpace();
+            if (pos >= s.length()) throw error("Unexpected end of input");
+            char c = s.charAt(pos);
+            if (c == '{') return readObject();
+            if (c == '[') return readArray();
+            if (c == '"') return readString();
+            if (c == '-' || Character.isDigit(c)) return readNumber();
+            for (String word : new String[] {"true", "false", "null"}) {
+                if (s.startsWith(word, pos)) {
+                    pos += word.length();
+                    return word.equals("null") ? null : Boolean.valueOf(word);
+                }
+            }
+            throw error("Unexpected character '" + c + "'");
+        }
+
+        private JsonObject readObject() {
+            JsonObject object = new JsonObject();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipSpace();
+                String key = readString();
+                skipSpace();
+                expect(':');
+                object.put(key, readValue());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect('}');
+                return object;
+            }
+        }
+
+        private ArrayList<Object> readArray() {
+            ArrayList<Object> array = new ArrayList<>();
+            expect('[');
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect(']');
+                return array;
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= s.length()) throw error("Unterminated string");
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= s.length()) throw error("Unterminated string");
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) throw error("Bad \\u escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+        }
+
+        private Long readNumber() {
+            int start = pos;
+            if (peek() == '-') pos++;
+            while (pos < s.length() && Character.isDigit(s.charAt(pos))) pos++;
+            try {
+                return Long.parseLong(s.substring(start, pos));
+            }
+            catch (NumberFormatException e) {
+                throw error("Expected an integer");
+            }
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private char peek() {
+            return pos < s.length() ? s.charAt(pos) : '\0';
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("Expected '" + c + "'");
+            pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
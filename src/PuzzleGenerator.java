@@ -0,0 +1,269 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Random solvable layouts of a given inventory whose optimal solution length falls in a
+ * target range.
+ *
+ * Solving candidates one by one would throw most of the work away, so each random layout
+ * is only used to pick a connected component: the whole component goes into a
+ * DistanceDatabase, and every state in it whose distance to the goal is in range is a
+ * ready-made puzzle. Recent databases are kept, so a later candidate that lands in a
+ * known component costs one lookup. Workers explore different components in parallel.
+ * Closing the generator closes the cached databases.
+ *
+ * Distances are in single-cell moves, the metric DistanceDatabase uses.
+ *
+ * <pre>
+ *   java PuzzleGenerator 5x4 goal=6 counts=1,4,1,4 count=10 min=100 max=200 [seed=1]
+ * </pre>
+ * prints the puzzles in PuzzleFormat text form; counts are 2x2, 2x1, 1x2, 1x1.
+ */
+public final class PuzzleGenerator implements AutoCloseable {
+    /** Random layouts tried per requested puzzle before giving up on the rest. */
+    private static final int ATTEMPTS_PER_PUZZLE = 50;
+
+    /** Upper bound on the states kept across cached component databases. */
+    private static final long MAX_CACHED_STATES = 8_000_000;
+
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final SolverOptions options;
+    private final long seed;
+    private final ArrayList<DistanceDatabase> cache = new ArrayList<>();
+    private final ArrayList<DistanceDatabase> evicted = new ArrayList<>(); // Closed once no worker can be reading them
+    private long cachedStates;
+
+    public PuzzleGenerator(int rows, int cols, int[] counts, int goalSquare) {
+        this(rows, cols, counts, goalSquare, new SolverOptions(), System.nanoTime());
+    }
+
+    public PuzzleGenerator(int rows, int cols, int[] counts, int goalSquare, SolverOptions options, long seed) {
+        packed = new PackedBoard(rows, cols, counts, goalSquare);
+        codec = new StateCodec(packed);
+        if (!codec.fitsInLong()) throw new IllegalArgumentException("PuzzleGenerator needs single-long state codes");
+        if (packed.getNumEmpty() < 0) throw new IllegalArgumentException("Pieces cover more cells than the board has");
+        this.options = options;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) {
+        int rows = 5, cols = 4, goal = 6, count = 10, min = 1, max = Integer.MAX_VALUE;
+        int[] counts = {1, 4, 1, 4};
+        long seed = System.nanoTime();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String value = arg.substring(eq + 1);
+            switch (eq < 0 ? "size" : arg.substring(0, eq)) {
+                case "size" -> {
+                    rows = Integer.parseInt(arg.substring(0, arg.indexOf('x')));
+                    cols = Integer.parseInt(arg.substring(arg.indexOf('x') + 1));
+                }
+                case "goal" -> goal = Integer.parseInt(value);
+                case "counts" -> {
+                    String[] parts = value.split(",");
+                    for (int t = 0; t < PackedBoard.NUM_TYPES; t++) counts[t] = Integer.parseInt(parts[t]);
+                }
+                case "count" -> count = Integer.parseInt(value);
+                case "min" -> min = Integer.parseInt(value);
+                case "max" -> max = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        try (PuzzleGenerator generator = new PuzzleGenerator(rows, cols, counts, goal, new SolverOptions(), seed)) {
+            ArrayList<Board> boards = generator.generate(count, min, max);
+            for (int i = 0; i < boards.size(); i++) {
+                System.out.println(PuzzleFormat.toText("gen" + i + "-d" + generator.distance(boards.get(i)), boards.get(i)));
+            }
+            if (boards.size() < count) System.err.println("Only found " + boards.size() + " of " + count);
+        }
+    }
+
+    /**
+     * Up to count distinct layouts whose optimal solution takes between minMoves and
+     * maxMoves single-cell moves. At most a quarter of them (and at least one) come from
+     * any one component, so the result is not all variations of one position.
+     */
+    public ArrayList<Board> generate(int count, int minMoves, int maxMoves) {
+        int perComponent = Math.max(1, count / 4);
+        ArrayList<Long> found = new ArrayList<>();
+        HashSet<Long> seen = new HashSet<>();
+        AtomicInteger attempts = new AtomicInteger();
+        int threads = Math.max(1, options.threads);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "klotski-generator");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ArrayList<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < threads; w++) {
+                SplittableRandom random = new SplittableRandom(seed + w);
+                workers.add(pool.submit(() -> {
+                    long[] state = new long[PackedBoard.NUM_TYPES];
+                    while (attempts.getAndIncrement() < (long) count * ATTEMPTS_PER_PUZZLE) {
+                        synchronized (found) {
+                            if (found.size() >= count) return;
+                        }
+                        randomState(random, state);
+                        ArrayList<Long> picks = inRange(componentOf(codec.encode(state)), minMoves, maxMoves);
+                        Collections.shuffle(picks, new Random(random.nextLong()));
+                        synchronized (found) {
+                            int taken = 0;
+                            for (long code : picks) {
+                                if (found.size() >= count || taken >= perComponent) break;
+                                if (!seen.add(code)) continue;
+                                found.add(code);
+                                taken++;
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) join(worker);
+        }
+        finally {
+            pool.shutdownNow();
+            closeEvicted();
+        }
+
+        ArrayList<Board> boards = new ArrayList<>();
+        for (long code : found) boards.add(codec.toBoard(code));
+        return boards;
+    }
+
+    /** Distance of board to the goal if it is in a cached component, else -1. */
+    public int distance(Board board) {
+        long code = codec.encode(board);
+        synchronized (cache) {
+            for (DistanceDatabase db : cache) {
+                int id = db.getVisited().find(code);
+                if (id >= 0) return db.distanceById(id);
+            }
+        }
+        return DistanceDatabase.UNREACHABLE;
+    }
+
+    /** The cached database holding code, or a newly built one for its component. */
+    private DistanceDatabase componentOf(long code) {
+        synchronized (cache) {
+            for (DistanceDatabase db : cache) {
+                if (db.getVisited().find(code) >= 0) return db;
+            }
+        }
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        codec.decode(code, state);
+        DistanceDatabase db = DistanceDatabase.build(packed.toBoard(state), options);
+        synchronized (cache) {
+            cache.add(db);
+            cachedStates += db.size();
+            // Drop the oldest components once over budget, always keeping the newest
+            for (Iterator<DistanceDatabase> it = cache.iterator(); cachedStates > MAX_CACHED_STATES && cache.size() > 1; ) {
+                DistanceDatabase oldest = it.next();
+                cachedStates -= oldest.size();
+                evicted.add(oldest);
+                it.remove();
+            }
+        }
+        return db;
+    }
+
+    /** Closes the cached component databases; distance() knows nothing after this. */
+    @Override
+    public void close() {
+        closeEvicted();
+        synchronized (cache) {
+            for (DistanceDatabase db : cache) db.close();
+            cache.clear();
+            cachedStates = 0;
+        }
+    }
+
+    /** Closes databases dropped from the cache, once generate() has joined the workers that might hold them. */
+    private void closeEvicted() {
+        synchronized (cache) {
+            for (DistanceDatabase db : evicted) db.close();
+            evicted.clear();
+        }
+    }
+
+    private static ArrayList<Long> inRange(DistanceDatabase db, int minMoves, int maxMoves) {
+        ArrayList<Long> codes = new ArrayList<>();
+        if (db.getMaxDistance() < minMoves) return codes;
+        for (int id = 1; id <= db.size(); id++) {
+            int d = db.distanceById(id);
+            if (d >= minMoves && d <= maxMoves) codes.add(db.getVisited().getCode(id));
+        }
+        return codes;
+    }
+
+    /**
+     * Fills state with a random placement of the inventory. Cells are filled in reading
+     * order, each getting a piece type or staying empty with odds proportional to what is
+     * left; a dead end (a cell nothing fits) restarts the placement.
+     */
+    public void randomState(SplittableRandom random, long[] state) {
+        int cells = packed.getNumRows() * packed.getNumCols();
+        int[] remaining = new int[PackedBoard.NUM_TYPES];
+        int[] weights = new int[PackedBoard.NUM_TYPES + 1];
+        placement:
+        while (true) {
+            for (int t = 0; t < PackedBoard.NUM_TYPES; t++) {
+                remaining[t] = packed.getCount(t);
+                state[t] = 0L;
+            }
+            int emptyLeft = packed.getNumEmpty();
+            long covered = 0L;
+            for (int cell = cells - 1; cell >= 0; cell--) {
+                long bit = 1L << cell;
+                if ((covered & bit) != 0) continue;
+                int total = 0;
+                for (int t = 0; t < PackedBoard.NUM_TYPES; t++) {
+                    boolean fits = remaining[t] > 0 && packed.fits(t, bit) && (packed.cellsOf(t, bit) & covered) == 0;
+                    weights[t] = fits ? remaining[t] : 0;
+                    total += weights[t];
+                }
+                weights[PackedBoard.NUM_TYPES] = emptyLeft;
+                total += emptyLeft;
+                if (total == 0) continue placement;
+
+                int pick = random.nextInt(total);
+                int choice = 0;
+                while (pick >= weights[choice]) pick -= weights[choice++];
+                if (choice == PackedBoard.NUM_TYPES) {
+                    emptyLeft--;
+                    continue;
+                }
+                remaining[choice]--;
+                state[choice] |= bit;
+                covered |= packed.cellsOf(choice, bit);
+            }
+            return;
+        }
+    }
+
+    private static void join(Future<?> future) {
+        try {
+            future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Generator worker failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import java.io.PrintStream;
+
+/**
+ * SolverListener that prints at most one progress line per interval, plus a line per
+ * BFS layer and a summary at the end. Replaces the old fixed every-50,000-states dump.
+ */
+public class SamplingReporter implements SolverListener {
+    private final PrintStream out;
+    private final long intervalNanos;
+    private long lastReport = Long.MIN_VALUE;
+
+    public SamplingReporter() {
+        this(System.out, 1000);
+    }
+
+    public SamplingReporter(PrintStream out, long intervalMillis) {
+        this.out = out;
+        this.intervalNanos = intervalMillis * 1_000_000;
+    }
+
+    @Override
+    public void onProgress(SolverStats stats) {
+        long now = System.nanoTime();
+        if (lastReport != Long.MIN_VALUE && now - lastReport < intervalNanos) return;
+        lastReport = now;
+        Runtime rt = Runtime.getRuntime();
+        out.printf("%s, heap %,d of %,d MB%n", stats, (rt.totalMemory() - rt.freeMemory()) >> 20, rt.maxMemory() >> 20);
+    }
+
+    @Override
+    public void onLayer(SolverStats stats) {
+        out.printf("layer %d: %,d states in %.1f ms%n", stats.depth, stats.frontierSize, stats.layerNanos / 1e6);
+    }
+
+    @Override
+    public void onFinish(SolverStats stats) {
+        out.printf("finished in %.1f ms: %s%n", stats.elapsedNanos / 1e6, stats);
+    }
+}
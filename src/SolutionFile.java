@@ -0,0 +1,222 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Versioned on-disk form of a DistanceDatabase, read back through a memory mapping.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   0  int   magic "KLDB"
+ *   4  int   version
+ *   8  int   rows, int cols
+ *  16  int[4] piece counts by type
+ *  32  int   goal square
+ *  36  int   distance bits (always 2)
+ *  40  long  hash of the start layout
+ *  48  long  number of states n
+ *  56  int   max distance, int start distance
+ *  64  long[n] StateCodec codes, sorted ascending
+ *      byte[ceil(n / 4)] 2-bit distance column in the same order
+ * </pre>
+ * Each 2-bit entry is the distance to the nearest goal mod 3, or 3 if no goal is
+ * reachable. Mod 3 is enough to pick the next move: a successor's distance differs by at
+ * most one, so the one congruent to d - 1 is the one closer to the goal. Opening a file
+ * only maps it, and a lookup is a binary search over the mapped codes.
+ */
+public final class SolutionFile implements AutoCloseable {
+    private static final int MAGIC = 0x4B4C4442; // "KLDB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int NO_GOAL = 3;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final PackedBoard packed;
+    private final StateCodec codec;
+    private final long startHash;
+    private final int numStates;
+    private final int maxDistance;
+    private final int startDistance;
+    private final int distancesAt;
+
+    private SolutionFile(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES) throw new IOException("Solution file is truncated");
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a Klotski solution file");
+        int version = buffer.getInt(4);
+        if (version != VERSION) throw new IOException("Unsupported solution file version: " + version);
+        int[] counts = new int[PackedBoard.NUM_TYPES];
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) counts[t] = buffer.getInt(16 + 4 * t);
+        packed = new PackedBoard(buffer.getInt(8), buffer.getInt(12), counts, buffer.getInt(32));
+        codec = new StateCodec(packed);
+        startHash = buffer.getLong(40);
+        long n = buffer.getLong(48);
+        if (n < 0 || HEADER_BYTES + n * 8 + (n + 3) / 4 > buffer.capacity()) throw new IOException("Solution file is truncated");
+        numStates = (int) n;
+        maxDistance = buffer.getInt(56);
+        startDistance = buffer.getInt(60);
+        distancesAt = HEADER_BYTES + numStates * 8;
+    }
+
+    /** Maps file read-only. Files must stay under 2 GiB (about 250M states). */
+    public static SolutionFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Solution file over 2 GiB: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SolutionFile(channel, buffer);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static void write(DistanceDatabase db, Board start, Path file) throws IOException {
+        PackedBoard packed = db.getPackedBoard();
+        VisitedStore visited = db.getVisited();
+        long[] codes = new long[db.size()];
+        for (int id = 1; id <= codes.length; id++) codes[id - 1] = visited.getCode(id);
+        Arrays.sort(codes);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(packed.getNumRows());
+            out.writeInt(packed.getNumCols());
+            for (int t = 0; t < PackedBoard.NUM_TYPES; t++) out.writeInt(packed.getCount(t));
+            out.writeInt(packed.getGoalSquare());
+            out.writeInt(2);
+            out.writeLong(hashStart(db.getCodec().encode(start)));
+            out.writeLong(codes.length);
+            out.writeInt(db.getMaxDistance());
+            out.writeInt(db.distance(start));
+
+            for (long code : codes) out.writeLong(code);
+            int packedByte = 0;
+            for (int i = 0; i < codes.length; i++) {
+                int d = db.distance(codes[i]);
+                int entry = d < 0 ? NO_GOAL : d % 3;
+                packedByte |= entry << (2 * (i & 3));
+                if ((i & 3) == 3 || i == codes.length - 1) {
+                    out.writeByte(packedByte);
+                    packedByte = 0;
+                }
+            }
+        }
+    }
+
+    private static long hashStart(long startCode) {
+        long h = startCode * 0x9e3779b97f4a7c15L;
+        h ^= (h >>> 32);
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 29);
+    }
+
+    public PackedBoard getPackedBoard() {
+        return packed;
+    }
+
+    public int size() {
+        return numStates;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public int getStartDistance() {
+        return startDistance;
+    }
+
+    /** True if board has this file's geometry, inventory and goal square. */
+    public boolean matches(Board board) {
+        if (board.getNumRows() != packed.getNumRows() || board.getNumCols() != packed.getNumCols()) return false;
+        if (board.getGoalSquare() != packed.getGoalSquare()) return false;
+        int[] counts = new int[PackedBoard.NUM_TYPES];
+        for (Piece piece : board.getPieces()) counts[piece.getType()]++;
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) {
+            if (counts[t] != packed.getCount(t)) return false;
+        }
+        return true;
+    }
+
+    /** True if board is the layout the file was built from. */
+    public boolean isStart(Board board) {
+        return matches(board) && hashStart(codec.encode(board)) == startHash;
+    }
+
+    /** An optimal next move, or null if board is solved, not in the file, or unsolvable. */
+    public BFS.Move bestMove(Board board) {
+        if (!matches(board)) return null;
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(board, state);
+        int moveCode = bestMoveCode(state);
+        return moveCode < 0 ? null : BFS.unpackMove(moveCode);
+    }
+
+    /** Follows bestMove to a goal; null if board is not in the file or unsolvable. */
+    public ArrayList<BFS.Move> solve(Board board) {
+        if (!matches(board)) return null;
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(board, state);
+        int index = indexOf(codec.encode(state));
+        if (index < 0 || entryAt(index) == NO_GOAL) return null;
+        ArrayList<BFS.Move> moves = new ArrayList<>();
+        int moveCode;
+        while ((moveCode = bestMoveCode(state)) >= 0) {
+            moves.add(BFS.unpackMove(moveCode));
+            packed.applyMove(state, moveCode);
+        }
+        return moves;
+    }
+
+    private int bestMoveCode(long[] state) {
+        if (packed.isGoal(state)) return -1;
+        int index = indexOf(codec.encode(state));
+        if (index < 0) return -1;
+        int entry = entryAt(index);
+        if (entry == NO_GOAL) return -1;
+
+        int closer = (entry + 2) % 3;
+        long[] codes = new long[packed.maxSuccessors()];
+        int[] moves = new int[packed.maxSuccessors()];
+        int count = packed.successors(state, codec, codes, moves);
+        for (int i = 0; i < count; i++) {
+            int next = indexOf(codes[i]);
+            if (next >= 0 && entryAt(next) == closer) return moves[i];
+        }
+        throw new IllegalStateException("No successor one step closer; solution file is inconsistent");
+    }
+
+    private int indexOf(long code) {
+        int lo = 0;
+        int hi = numStates - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midCode = buffer.getLong(HEADER_BYTES + mid * 8);
+            if (midCode < code) lo = mid + 1;
+            else if (midCode > code) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int entryAt(int index) {
+        return (buffer.get(distancesAt + (index >>> 2)) >>> (2 * (index & 3))) & 3;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the results of earlier solves of the same puzzle, so asking again from a nearby
+ * position is a lookup or a short resumed search instead of a new BFS. Puzzles are keyed
+ * by geometry, inventory, goal square, move metric and visited-store options.
+ *
+ * The first solve of a puzzle is a plain forward BFS, and its solution is kept along with
+ * the state before each move. Any later position on that path is answered with the rest
+ * of it, which is optimal too. The forward search's visited store is not kept: its
+ * parents lead back to the start, not towards a goal, so it cannot answer a position off
+ * the path.
+ *
+ * Positions off the path use an entry instead: a BFS run backwards from every goal state
+ * at once. A state's parent in that search is one move closer to a goal, so once the
+ * current position has been reached, following parents is an optimal solution. A
+ * position not reached yet resumes the search at the saved frontier until it turns up,
+ * and everything found on the way stays for later queries. The entry is seeded after
+ * the first solve, which costs one pass over the goal placements on top of that solve,
+ * and only if the forward search and the goal set were both small.
+ *
+ * A resumed search that would take an entry past the state budget abandons it, and the
+ * puzzle is solved by a plain BFS from then on. Other entries are evicted least recently
+ * used first once the cache is over its entry or state budget, and the least recently
+ * used solution paths once there are more than maxEntries of them. Codes that do not fit
+ * in a long are never cached.
+ */
+public final class SolveCache {
+    private final int maxEntries;
+    private final long maxStates;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, SolutionPath> paths = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashSet<String> abandoned = new HashSet<>(); // Keys whose backward search outgrew maxStates
+
+    public SolveCache() {
+        this(4, 8_000_000);
+    }
+
+    public SolveCache(int maxEntries, long maxStates) {
+        this.maxEntries = maxEntries;
+        this.maxStates = maxStates;
+    }
+
+    /** Same contract as BFS.solve: the moves, or null if there is no solution. */
+    public synchronized ArrayList<BFS.Move> solve(Board board, SolverOptions options) {
+        PackedBoard packed = new PackedBoard(board);
+        StateCodec codec = new StateCodec(packed);
+        String key = keyOf(packed, options);
+        SolutionPath solution = codec.fitsInLong() ? paths.get(key) : null;
+        if (solution != null) {
+            ArrayList<BFS.Move> rest = solution.from(codec.encode(board));
+            if (rest != null) return rest;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            try (BFS bfs = new BFS(board, options)) {
+                ArrayList<BFS.Move> moves = bfs.solve(new Board(board));
+                if (moves != null && codec.fitsInLong()) {
+                    paths.put(key, new SolutionPath(board, codec, moves));
+                    if (paths.size() > maxEntries) paths.remove(paths.keySet().iterator().next());
+                }
+                // A backward search tends to cover at least what the forward one did, plus every goal state
+                if (codec.fitsInLong() && !abandoned.contains(key) && bfs.getVisited().size() <= maxStates / 4) {
+                    entry = Entry.seed(packed, codec, options, maxStates / 64);
+                    if (entry != null) {
+                        entries.put(key, entry);
+                        evict(entry);
+                    }
+                }
+                return moves;
+            }
+        }
+
+        int id;
+        try {
+            id = entry.find(board, options, maxStates);
+        }
+        finally {
+            evict(entry);
+        }
+        if (id == Entry.OVER_BUDGET) {
+            entry.visited.close();
+            entries.remove(key);
+            abandoned.add(key);
+            return plainSolve(board, options);
+        }
+        return id < 0 ? null : entry.path(board, id);
+    }
+
+    /** States held across all entries. */
+    public synchronized long size() {
+        long total = 0;
+        for (Entry entry : entries.values()) total += entry.visited.size();
+        return total;
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) entry.visited.close();
+        entries.clear();
+        paths.clear();
+        abandoned.clear();
+    }
+
+    private static ArrayList<BFS.Move> plainSolve(Board board, SolverOptions options) {
+        try (BFS bfs = new BFS(board, options)) {
+            return bfs.solve(new Board(board));
+        }
+    }
+
+    private static String keyOf(PackedBoard packed, SolverOptions options) {
+        StringBuilder key = new StringBuilder();
+        key.append(packed.getNumRows()).append('x').append(packed.getNumCols()).append(" goal=").append(packed.getGoalSquare());
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) key.append(' ').append(packed.getCount(t));
+        key.append(options.macroMoves ? " macro" : " step");
+        // Entries keep the store their first caller's options built
+        if (options.mirrorSymmetry) key.append(" mirror");
+        if (options.offHeapVisited) key.append(" offheap");
+        return key.toString();
+    }
+
+    /** Drops least recently used entries, never the one just used, until within budget. */
+    private void evict(Entry keep) {
+        long total = size();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && (entries.size() > maxEntries || total > maxStates); ) {
+            Entry entry = it.next();
+            if (entry == keep) continue;
+            total -= entry.visited.size();
+            entry.visited.close();
+            it.remove();
+        }
+    }
+
+    /** A forward solution, with the code of the state before each of its moves. */
+    private static final class SolutionPath {
+        private final ArrayList<BFS.Move> moves;
+        private final HashMap<Long, Integer> stepOf = new HashMap<>();
+
+        SolutionPath(Board start, StateCodec codec, ArrayList<BFS.Move> moves) {
+            this.moves = new ArrayList<>(moves);
+            Board board = new Board(start);
+            for (int i = 0; i < moves.size(); i++) {
+                stepOf.putIfAbsent(codec.encode(board), i);
+                BFS.Move move = moves.get(i);
+                for (Piece piece : board.getPieces()) {
+                    if (piece.getType() != move.type || piece.getTopLeft() != move.fromTopLeft) continue;
+                    for (char dir : move.path) board.movePiece(piece, dir);
+                    break;
+                }
+            }
+            stepOf.putIfAbsent(codec.encode(board), moves.size());
+        }
+
+        /** The rest of the solution from the state with this code, or null if it is not on the path. */
+        ArrayList<BFS.Move> from(long code) {
+            Integer step = stepOf.get(code);
+            return step == null ? null : new ArrayList<>(moves.subList(step, moves.size()));
+        }
+    }
+
+    private static final class Entry {
+        static final int OVER_BUDGET = -2;
+
+        private final PackedBoard packed;
+        private final StateCodec codec;
+        private final VisitedStore visited;
+        private final boolean macroMoves;
+        private final long[] state = new long[PackedBoard.NUM_TYPES];
+        private final long[] codes;
+        private final int[] moves;
+        private int cursor = 1; // Next id to expand; ids below it are fully expanded
+
+        private Entry(PackedBoard packed, StateCodec codec, VisitedStore visited, boolean macroMoves) {
+            this.packed = packed;
+            this.codec = codec;
+            this.visited = visited;
+            this.macroMoves = macroMoves;
+            int maxMoves = macroMoves ? packed.maxMacroMoves() : packed.maxSuccessors();
+            codes = new long[maxMoves];
+            moves = new int[maxMoves];
+        }
+
+        /** A search seeded with every goal state, or null if there are more than maxGoals. */
+        static Entry seed(PackedBoard packed, StateCodec codec, SolverOptions options, long maxGoals) {
+            VisitedStore visited = options.createVisitedStore(1);
+            CancellationToken cancellation = options.cancellation;
+            boolean complete;
+            try {
+                complete = packed.forEachGoalState(goal -> {
+                    if (visited.size() >= maxGoals) return false;
+                    if (cancellation != null && (visited.size() & (SolverMonitor.CHECK_INTERVAL - 1)) == 0) {
+                        cancellation.throwIfCancelled();
+                    }
+                    visited.addIfAbsent(codec.encode(goal), -1, -1);
+                    return true;
+                });
+            }
+            catch (RuntimeException e) {
+                visited.close();
+                throw e;
+            }
+            if (complete) return new Entry(packed, codec, visited, options.macroMoves);
+            visited.close();
+            return null;
+        }
+
+        /**
+         * The id of board's state, resuming the search if it has not been reached yet: -1 if
+         * nothing reachable from the goals meets it, OVER_BUDGET if the search would pass
+         * maxStates first.
+         */
+        int find(Board board, SolverOptions options, long maxStates) {
+            long target = codec.encode(board);
+            int id = visited.find(target);
+            return id >= 0 ? id : resume(target, options, maxStates);
+        }
+
+        /** The solution from board, whose state has the given id. */
+        ArrayList<BFS.Move> path(Board board, int id) {
+            // Each parent is one move closer to a goal, so undo the stored moves one by one
+            packed.load(board, state);
+            ArrayList<BFS.Move> path = new ArrayList<>();
+            for (; visited.getParentById(id) >= 0; id = visited.getParentById(id)) {
+                int moveCode = visited.getMoveCodeById(id);
+                if (macroMoves) {
+                    int back = PackedBoard.packMacroMove(moveCode & 3, PackedBoard.macroTo(moveCode), PackedBoard.macroFrom(moveCode));
+                    path.add(new BFS.Move(back & 3, PackedBoard.macroFrom(back), packed.macroPath(state, back)));
+                    packed.applyMacroMove(state, back);
+                }
+                else {
+                    int back = BFS.invertMoveCode(moveCode, packed);
+                    path.add(BFS.unpackMove(back));
+                    packed.applyMove(state, back);
+                }
+            }
+            return path;
+        }
+
+        /** Fills codes and moves with the successors of state under this entry's move metric. */
+        private int successors() {
+            if (!macroMoves) return packed.successors(state, codec, codes, moves);
+            int n = packed.macroMoves(state, moves);
+            for (int i = 0; i < n; i++) {
+                int type = moves[i] & 3;
+                long saved = state[type];
+                packed.applyMacroMove(state, moves[i]);
+                codes[i] = codec.encode(state);
+                state[type] = saved;
+            }
+            return n;
+        }
+
+        /**
+         * Expands from the saved frontier until target is added; returns its id, -1 once
+         * exhausted, or OVER_BUDGET once the store holds maxStates.
+         */
+        private int resume(long target, SolverOptions options, long maxStates) {
+            SolverMonitor monitor = new SolverMonitor(options, visited);
+            try {
+                for (; cursor < visited.nextId(); cursor++) {
+                    if (visited.size() >= maxStates) return OVER_BUDGET;
+                    monitor.expand();
+                    codec.decode(visited.getCode(cursor), state);
+                    int n = successors();
+                    int found = -1;
+                    for (int i = 0; i < n; i++) {
+                        int added = visited.addIfAbsent(codes[i], cursor, moves[i]);
+                        if (added >= 0 && codes[i] == target) found = added;
+                    }
+                    if (found >= 0) {
+                        cursor++;
+                        return found;
+                    }
+                }
+                return -1;
+            }
+            finally {
+                monitor.finish();
+            }
+        }
+    }
+}
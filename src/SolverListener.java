@@ -0,0 +1,19 @@
+/**
+ * Receives progress from a running solver. Callbacks run on the solving thread, so a
+ * listener that updates a UI must hand the stats over to its own thread.
+ *
+ * Every method defaults to doing nothing, and solvers skip building stats altogether
+ * when the listener is NONE.
+ */
+public interface SolverListener {
+    SolverListener NONE = new SolverListener() {};
+
+    /** Called every few thousand expanded states. */
+    default void onProgress(SolverStats stats) {}
+
+    /** Called when a BFS layer, or an IDA* iteration, is finished. */
+    default void onLayer(SolverStats stats) {}
+
+    /** Called once when the solver stops, whether or not it found a solution. */
+    default void onFinish(SolverStats stats) {}
+}
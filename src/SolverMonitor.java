@@ -0,0 +1,74 @@
+/**
+ * Per-solve bookkeeping shared by the solvers: counts expansions, polls the cancellation
+ * token and feeds the listener. expand() is the only call on the hot path and does one
+ * increment and one mask test unless a checkpoint is due.
+ */
+final class SolverMonitor {
+    /** Expansions between cancellation checks and progress callbacks; a power of two. */
+    static final int CHECK_INTERVAL = 4096;
+
+    private final SolverListener listener;
+    private final CancellationToken cancellation;
+    private final VisitedStore visited;
+    private final long startNanos = System.nanoTime();
+    private long layerStartNanos = startNanos;
+    private long expanded;
+    private int depth;
+    private long frontierSize;
+    private long visitedSize;
+
+    /** visited may be null for solvers without a VisitedStore; they report sizes through setVisitedSize. */
+    SolverMonitor(SolverOptions options, VisitedStore visited) {
+        listener = options.listener == null ? SolverListener.NONE : options.listener;
+        cancellation = options.cancellation;
+        this.visited = visited;
+    }
+
+    void expand() {
+        if ((++expanded & (CHECK_INTERVAL - 1)) == 0) checkpoint();
+    }
+
+    /** For solvers that count expansions themselves, e.g. once per chunk. */
+    void addExpanded(long count) {
+        expanded += count;
+        checkpoint();
+    }
+
+    void checkpoint() {
+        if (cancellation != null) cancellation.throwIfCancelled();
+        if (listener != SolverListener.NONE) listener.onProgress(snapshot(System.nanoTime()));
+    }
+
+    /** Starts expanding layer depth, which holds frontierSize states. */
+    void startLayer(int depth, long frontierSize) {
+        this.depth = depth;
+        this.frontierSize = frontierSize;
+        layerStartNanos = System.nanoTime();
+    }
+
+    /** Reports the layer given to the last startLayer as finished. */
+    void endLayer() {
+        if (listener != SolverListener.NONE) listener.onLayer(snapshot(System.nanoTime()));
+    }
+
+    void setVisitedSize(long visitedSize) {
+        this.visitedSize = visitedSize;
+    }
+
+    long getExpanded() {
+        return expanded;
+    }
+
+    void finish() {
+        if (listener != SolverListener.NONE) listener.onFinish(snapshot(System.nanoTime()));
+    }
+
+    private SolverStats snapshot(long now) {
+        if (visited == null) {
+            return new SolverStats(depth, expanded, frontierSize, visitedSize, now - layerStartNanos, now - startNanos,
+                    Double.NaN, Double.NaN, 0, Double.NaN);
+        }
+        return new SolverStats(depth, expanded, frontierSize, visited.size(), now - layerStartNanos, now - startNanos,
+                visited.loadFactor(), visited.averageProbeLength(), visited.maxProbeLength(), visited.bytesPerState());
+    }
+}
@@ -0,0 +1,67 @@
+import java.nio.file.Path;
+
+/**
+ * Tuning knobs for the solvers. Defaults match a plain on-heap BFS.
+ */
+public class SolverOptions {
+    /** Pre-sizes the visited store, e.g. from a known state-space size. */
+    public int expectedStates = 200_000;
+
+    /** Keep the visited store in memory-mapped temp files instead of on the heap. */
+    public boolean offHeapVisited = false;
+
+    /** Where off-heap stores and ExternalBFS layers spill to; null means the default temp directory. */
+    public Path spillDir = null;
+
+    /** (child, parent) pairs ExternalBFS sorts in memory per run; 16 bytes each. */
+    public int externalRunStates = 4_000_000;
+
+    /**
+     * Search from the start and from every goal placement at once, expanding the smaller
+     * frontier each round. Needs single-long state codes, and falls back to plain BFS when
+     * mirrorSymmetry or macroMoves is set so that those settings always take effect.
+     */
+    public boolean bidirectional = false;
+
+    /**
+     * Store a state and its left-right mirror as one visited entry when the goal is
+     * mirror-symmetric, roughly halving the states BFS.solve explores. Applies to plain
+     * BFS.solve with single-long codes, and turns off the bidirectional mode; exploreAll
+     * ignores it.
+     */
+    public boolean mirrorSymmetry = false;
+
+    /**
+     * Count a piece sliding any distance, around corners, through empty space as one move,
+     * the usual Klotski move metric. BFS.solve then returns Moves whose path holds the
+     * single-cell steps. Turns off the bidirectional mode; exploreAll ignores it.
+     */
+    public boolean macroMoves = false;
+
+    /**
+     * Dead-pattern filter for BFS.solve, plain or bidirectional: the start and any forward
+     * successor whose pattern never occurs in a solvable state are dropped. Must match the
+     * board's inventory and goal.
+     */
+    public PatternDatabase patternDatabase = null;
+
+    /** Above this many goal placements the bidirectional mode falls back to plain BFS. */
+    public int maxGoalStates = 2_000_000;
+
+    /** Worker threads for ParallelBFS. */
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    /** IDA* gives up (returns null) after expanding this many nodes. */
+    public long idaNodeLimit = Long.MAX_VALUE;
+
+    /** Receives progress and per-layer stats; NONE costs nothing. */
+    public SolverListener listener = SolverListener.NONE;
+
+    /** Checked every few thousand states; null means the solve cannot be cancelled. */
+    public CancellationToken cancellation = null;
+
+    public VisitedStore createVisitedStore(int keyWords) {
+        if (offHeapVisited) return new MappedVisitedTable(expectedStates, keyWords, spillDir);
+        return new LongVisitedTable(expectedStates, keyWords);
+    }
+}
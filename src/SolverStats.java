@@ -0,0 +1,43 @@
+/**
+ * Snapshot of a solver's counters, handed to a SolverListener.
+ *
+ * Visited-table figures are NaN or 0 for solvers without a VisitedStore. In onLayer,
+ * depth, frontierSize and layerNanos describe the layer that just finished; in
+ * onProgress they describe the one being expanded.
+ */
+public final class SolverStats {
+    public final int depth;
+    public final long expanded;
+    public final long frontierSize;
+    public final long visitedSize;
+    public final long layerNanos;
+    public final long elapsedNanos;
+    public final double loadFactor;
+    public final double averageProbeLength;
+    public final int maxProbeLength;
+    public final double bytesPerState;
+
+    public SolverStats(int depth, long expanded, long frontierSize, long visitedSize, long layerNanos, long elapsedNanos,
+                       double loadFactor, double averageProbeLength, int maxProbeLength, double bytesPerState) {
+        this.depth = depth;
+        this.expanded = expanded;
+        this.frontierSize = frontierSize;
+        this.visitedSize = visitedSize;
+        this.layerNanos = layerNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.loadFactor = loadFactor;
+        this.averageProbeLength = averageProbeLength;
+        this.maxProbeLength = maxProbeLength;
+        this.bytesPerState = bytesPerState;
+    }
+
+    public double statesPerSecond() {
+        return elapsedNanos == 0 ? 0 : expanded * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d, expanded %,d (%,.0f/s), frontier %,d, visited %,d, load %.2f, avg probe %.2f, max probe %d, %.1f B/state",
+                depth, expanded, statesPerSecond(), frontierSize, visitedSize, loadFactor, averageProbeLength, maxProbeLength, bytesPerState);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Canonical packed encoding of PackedBoard states.
+ *
+ * Cells are scanned in reading order (top-left first). Every cell that is not covered
+ * by a piece found earlier in the scan contributes one base-5 digit: 0 for empty, or
+ * 1 + the type of the piece whose top-left is there. Only the piece types are recorded,
+ * so identical pieces collapse, and the digit count is fixed for a given inventory
+ * (number of pieces + number of empty cells).
+ *
+ * Up to 27 digits fit in a single long, which covers every built-in layout. Up to 54
+ * digits fit in the wide (two long) form.
+ */
+public final class StateCodec {
+    private static final int RADIX = 5;
+    public static final int DIGITS_PER_LONG = 27; // 5^27 < 2^63
+
+    private final PackedBoard packed;
+    private final long boardMask;
+    private final int numDigits;
+
+    public StateCodec(PackedBoard packed) {
+        this.packed = packed;
+        int cells = packed.getNumRows() * packed.getNumCols();
+        if (cells > 64) throw new IllegalArgumentException("Board has more than 64 cells: " + cells);
+        boardMask = cells == 64 ? -1L : (1L << cells) - 1;
+
+        int numPieces = 0;
+        int covered = 0;
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) {
+            numPieces += packed.getCount(t);
+            covered += packed.getCount(t) * Long.bitCount(packed.cellsOf(t, 1L << (cells - 1)));
+        }
+        numDigits = numPieces + (cells - covered);
+        if (numDigits > 2 * DIGITS_PER_LONG) {
+            throw new IllegalArgumentException("State needs " + numDigits + " digits, more than 128 bits");
+        }
+    }
+
+    public PackedBoard getPackedBoard() {
+        return packed;
+    }
+
+    public int getNumDigits() {
+        return numDigits;
+    }
+
+    /** True if every state of this inventory encodes into a single long. */
+    public boolean fitsInLong() {
+        return numDigits <= DIGITS_PER_LONG;
+    }
+
+    public long encode(long[] state) {
+        if (!fitsInLong()) throw new IllegalStateException("Use encodeWide: " + numDigits + " digits");
+        long code = 0L;
+        long mult = 1L;
+        long symbolCells = symbolCells(state);
+        while (symbolCells != 0) {
+            long bit = Long.highestOneBit(symbolCells);
+            symbolCells ^= bit;
+            code += digitAt(state, bit) * mult;
+            mult *= RADIX;
+        }
+        return code;
+    }
+
+    public long encode(Board board) {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        packed.load(board, state);
+        return encode(state);
+    }
+
+    public void decode(long code, long[] state) {
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) state[t] = 0L;
+        decodeDigits(code, Long.highestOneBit(boardMask), 0L, state);
+    }
+
+    public Board toBoard(long code) {
+        long[] state = new long[PackedBoard.NUM_TYPES];
+        decode(code, state);
+        return packed.toBoard(state);
+    }
+
+    /** 128-bit form: out[0] holds the first 27 digits, out[1] the rest. */
+    public void encodeWide(long[] state, long[] out) {
+        long lo = 0L;
+        long hi = 0L;
+        long mult = 1L;
+        int digit = 0;
+        long symbolCells = symbolCells(state);
+        while (symbolCells != 0) {
+            long bit = Long.highestOneBit(symbolCells);
+            symbolCells ^= bit;
+            if (digit == DIGITS_PER_LONG) mult = 1L;
+            if (digit < DIGITS_PER_LONG) lo += digitAt(state, bit) * mult;
+            else hi += digitAt(state, bit) * mult;
+            mult *= RADIX;
+            digit++;
+        }
+        out[0] = lo;
+        out[1] = hi;
+    }
+
+    public void decodeWide(long lo, long hi, long[] state) {
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) state[t] = 0L;
+        if (numDigits <= DIGITS_PER_LONG) {
+            decodeDigits(lo, Long.highestOneBit(boardMask), 0L, state);
+            return;
+        }
+        // Run the low word for exactly its 27 digits, then continue the scan with the high word
+        long bit = Long.highestOneBit(boardMask);
+        long covered = 0L;
+        int digits = 0;
+        while (digits < DIGITS_PER_LONG) {
+            if ((covered & bit) == 0) {
+                int d = (int) (lo % RADIX);
+                lo /= RADIX;
+                if (d != 0) {
+                    state[d - 1] |= bit;
+                    covered |= packed.cellsOf(d - 1, bit);
+                }
+                digits++;
+            }
+            bit >>>= 1;
+        }
+        decodeDigits(hi, bit, covered, state);
+    }
+
+    private void decodeDigits(long code, long bit, long covered, long[] state) {
+        // Trailing digits are all "empty", so the scan can stop as soon as the code runs out
+        while (code != 0) {
+            if ((covered & bit) == 0) {
+                int d = (int) (code % RADIX);
+                code /= RADIX;
+                if (d != 0) {
+                    state[d - 1] |= bit;
+                    covered |= packed.cellsOf(d - 1, bit);
+                }
+            }
+            bit >>>= 1;
+        }
+    }
+
+    private long symbolCells(long[] state) {
+        long topLefts = 0L;
+        for (int t = 0; t < PackedBoard.NUM_TYPES; t++) topLefts |= state[t];
+        return topLefts | (~packed.occupancy(state) & boardMask);
+    }
+
+    private static long digitAt(long[] state, long bit) {
+        if ((state[Piece.TWO_BY_TWO] & bit) != 0) return 1 + Piece.TWO_BY_TWO;
+        if ((state[Piece.TWO_BY_ONE] & bit) != 0) return 1 + Piece.TWO_BY_ONE;
+        if ((state[Piece.ONE_BY_TWO] & bit) != 0) return 1 + Piece.ONE_BY_TWO;
+        if ((state[Piece.ONE_BY_ONE] & bit) != 0) return 1 + Piece.ONE_BY_ONE;
+        return 0;
+    }
+}
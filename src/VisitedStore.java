@@ -0,0 +1,60 @@
+/**
+ * Visited set plus parent/move links for the solvers, keyed by StateCodec codes.
+ *
+ * Ids are dense, start at 1 and are handed out in insertion order, so a BFS can use
+ * the id range itself as its queue. Codes of keyWords = 2 stores are (lo, hi) pairs.
+ */
+public interface VisitedStore extends AutoCloseable {
+    /** Returns the new id, or -1 if the code was already present. */
+    int addIfAbsent(long code, int parent, int moveCode);
+
+    int addIfAbsent(long lo, long hi, int parent, int moveCode);
+
+    /** Returns the id of the code, or -1 if it has not been added. */
+    int find(long code);
+
+    int find(long lo, long hi);
+
+    long getCode(int id);
+
+    long getCodeHi(int id);
+
+    int getParentById(int id);
+
+    int getMoveCodeById(int id);
+
+    int getKeyWords();
+
+    /** Ids are 1..size(). */
+    int size();
+
+    /** The id the next inserted code will get. */
+    int nextId();
+
+    int capacity();
+
+    double loadFactor();
+
+    double averageProbeLength();
+
+    int maxProbeLength();
+
+    void resetProbeStats();
+
+    /** Approximate bytes held per stored state, including table slack and id headroom. */
+    double bytesPerState();
+
+    /** Releases any files or native memory behind the store. */
+    @Override
+    default void close() {}
+
+    static int mix(long lo, long hi) {
+        long h = lo ^ (hi * 0x9e3779b97f4a7c15L);
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * BFS for boards with more than 64 cells, where PackedBoard and StateCodec do not apply.
+ *
+ * Works directly on Board copies and their BitBoards. Pieces of the same type are
+ * interchangeable, so a state is keyed by the union of each type's cells. Each state
+ * also carries a Zobrist hash, updated with two XORs per move, which is all the seen
+ * map looks at until two hashes match; only then are the cell unions built and
+ * compared. Much slower than BFS and meant for the odd oversized layout, not for
+ * search-heavy work.
+ */
+public class WideBFS {
+    private static final char[] DIRS = {'u','d','l','r'};
+
+    private final ArrayList<Board> states = new ArrayList<>();
+    private final ArrayList<Integer> parents = new ArrayList<>();
+    private final ArrayList<BFS.Move> moves = new ArrayList<>();
+    private long[] hashes = new long[1024];
+    private final HashMap<Key, Integer> seen = new HashMap<>();
+    private final SolverOptions options;
+
+    public WideBFS() {
+        this(new SolverOptions());
+    }
+
+    /** Only the listener and cancellation options apply. */
+    public WideBFS(SolverOptions options) {
+        this.options = options;
+    }
+
+    public ArrayList<BFS.Move> solve(Board start) {
+        SolverMonitor monitor = new SolverMonitor(options, null);
+        try {
+            return solve(start, monitor);
+        }
+        finally {
+            monitor.finish();
+        }
+    }
+
+    private ArrayList<BFS.Move> solve(Board start, SolverMonitor monitor) {
+        Zobrist zobrist = new Zobrist(start.getNumRows() * start.getNumCols());
+        add(new Board(start), zobrist.hash(start), -1, null);
+        for (int head = 0; head < states.size(); head++) {
+            monitor.setVisitedSize(states.size());
+            monitor.expand();
+            Board board = states.get(head);
+            if (isGoal(board)) return reconstructMoves(head);
+
+            for (int p = 0; p < board.getPieces().size(); p++) {
+                Piece piece = board.getPieces().get(p);
+                for (char dir : DIRS) {
+                    Board next = new Board(board);
+                    Piece moved = next.getPieces().get(p);
+                    if (!next.movePiece(moved, dir)) continue;
+                    long hash = zobrist.move(hashes[head], piece.getType(), piece.getTopLeft(), moved.getTopLeft());
+                    add(next, hash, head, new BFS.Move(piece.getType(), piece.getTopLeft(), dir));
+                }
+            }
+        }
+        return null; // no solution
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    private void add(Board board, long hash, int parent, BFS.Move move) {
+        if (seen.putIfAbsent(new Key(board, hash), states.size()) != null) return;
+        if (states.size() == hashes.length) hashes = Arrays.copyOf(hashes, hashes.length * 2);
+        hashes[states.size()] = hash;
+        states.add(board);
+        parents.add(parent);
+        moves.add(move);
+    }
+
+    private static boolean isGoal(Board board) {
+        for (Piece piece : board.getPieces()) {
+            if (piece.getType() == Piece.TWO_BY_TWO && piece.getTopLeft() == board.getGoalSquare()) return true;
+        }
+        return false;
+    }
+
+    private ArrayList<BFS.Move> reconstructMoves(int index) {
+        ArrayList<BFS.Move> path = new ArrayList<>();
+        for (int i = index; parents.get(i) >= 0; i = parents.get(i)) path.add(moves.get(i));
+        Collections.reverse(path);
+        return path;
+    }
+
+    /** A board and its Zobrist hash; the canonical cell unions are only built for comparing equal hashes. */
+    private static final class Key {
+        private final Board board;
+        private final long hash;
+        private BitBoard[] cellsByType;
+
+        Key(Board board, long hash) {
+            this.board = board;
+            this.hash = hash;
+        }
+
+        private BitBoard[] cellsByType() {
+            if (cellsByType == null) {
+                cellsByType = new BitBoard[PackedBoard.NUM_TYPES];
+                Arrays.fill(cellsByType, BitBoard.empty(board.getNumRows(), board.getNumCols()));
+                for (Piece piece : board.getPieces()) {
+                    cellsByType[piece.getType()] = cellsByType[piece.getType()].or(piece.getCells());
+                }
+            }
+            return cellsByType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && Arrays.equals(cellsByType(), other.cellsByType());
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
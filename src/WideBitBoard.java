@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+/** BitBoard for boards of more than 64 cells, backed by a long[] with cell i in word i / 64. */
+public final class WideBitBoard extends BitBoard {
+    private final long[] words;
+
+    WideBitBoard(int rows, int cols, long[] words) {
+        super(rows, cols);
+        this.words = words;
+    }
+
+    private static long[] wordsOf(BitBoard other) {
+        return ((WideBitBoard) other).words;
+    }
+
+    @Override
+    public boolean get(int cell) {
+        return cell >= 0 && cell < rows * cols && (words[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    @Override
+    public BitBoard with(int cell) {
+        long[] out = words.clone();
+        out[cell >>> 6] |= 1L << cell;
+        return new WideBitBoard(rows, cols, out);
+    }
+
+    @Override
+    public BitBoard or(BitBoard other) {
+        long[] o = wordsOf(other);
+        long[] out = new long[words.length];
+        for (int i = 0; i < out.length; i++) out[i] = words[i] | o[i];
+        return new WideBitBoard(rows, cols, out);
+    }
+
+    @Override
+    public BitBoard and(BitBoard other) {
+        long[] o = wordsOf(other);
+        long[] out = new long[words.length];
+        for (int i = 0; i < out.length; i++) out[i] = words[i] & o[i];
+        return new WideBitBoard(rows, cols, out);
+    }
+
+    @Override
+    public BitBoard andNot(BitBoard other) {
+        long[] o = wordsOf(other);
+        long[] out = new long[words.length];
+        for (int i = 0; i < out.length; i++) out[i] = words[i] & ~o[i];
+        return new WideBitBoard(rows, cols, out);
+    }
+
+    @Override
+    public BitBoard xor(BitBoard other) {
+        long[] o = wordsOf(other);
+        long[] out = new long[words.length];
+        for (int i = 0; i < out.length; i++) out[i] = words[i] ^ o[i];
+        return new WideBitBoard(rows, cols, out);
+    }
+
+    @Override
+    public boolean intersects(BitBoard other) {
+        long[] o = wordsOf(other);
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & o[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (long w : words) {
+            if (w != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int cardinality() {
+        int count = 0;
+        for (long w : words) count += Long.bitCount(w);
+        return count;
+    }
+
+    @Override
+    public BitBoard shift(int dir) {
+        long[][] edges = edges(rows, cols);
+        long[] kept = new long[words.length];
+        for (int i = 0; i < kept.length; i++) kept[i] = words[i] & ~edges[dir][i];
+        long[] out = switch (dir) {
+            case PackedBoard.UP -> shiftUp(kept, cols);
+            case PackedBoard.DOWN -> shiftDown(kept, cols);
+            case PackedBoard.LEFT -> shiftUp(kept, 1);
+            case PackedBoard.RIGHT -> shiftDown(kept, 1);
+            default -> throw new IllegalArgumentException("Bad dir: " + dir);
+        };
+        return new WideBitBoard(rows, cols, out);
+    }
+
+    /** Towards higher cell numbers by n bits. */
+    private static long[] shiftUp(long[] in, int n) {
+        long[] out = new long[in.length];
+        int wordShift = n >>> 6;
+        int bitShift = n & 63;
+        for (int i = in.length - 1; i >= wordShift; i--) {
+            long w = in[i - wordShift] << bitShift;
+            if (bitShift != 0 && i - wordShift - 1 >= 0) w |= in[i - wordShift - 1] >>> (64 - bitShift);
+            out[i] = w;
+        }
+        return out;
+    }
+
+    /** Towards lower cell numbers by n bits. */
+    private static long[] shiftDown(long[] in, int n) {
+        long[] out = new long[in.length];
+        int wordShift = n >>> 6;
+        int bitShift = n & 63;
+        for (int i = 0; i + wordShift < in.length; i++) {
+            long w = in[i + wordShift] >>> bitShift;
+            if (bitShift != 0 && i + wordShift + 1 < in.length) w |= in[i + wordShift + 1] << (64 - bitShift);
+            out[i] = w;
+        }
+        return out;
+    }
+
+    @Override
+    public boolean isTouching(int dir) {
+        long[] edge = edges(rows, cols)[dir];
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & edge[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long toLong() {
+        throw new IllegalStateException("Board has " + rows * cols + " cells, more than fit in a long");
+    }
+
+    @Override
+    public int highestCell() {
+        for (int i = words.length - 1; i >= 0; i--) {
+            if (words[i] != 0) return i * 64 + 63 - Long.numberOfLeadingZeros(words[i]);
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WideBitBoard other)) return false;
+        return Arrays.equals(words, other.words) && rows == other.rows && cols == other.cols;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of piece placements: one random key per (piece type, cell), and a
+ * state's hash is the XOR of the keys at every piece's top-left. Only types are keyed,
+ * so swapping two pieces of the same type leaves the hash unchanged, and a move updates
+ * it with two XORs: the key at the old top-left out, the key at the new one in.
+ *
+ * Works on Boards of any size. Equal states always hash equal; unequal ones collide
+ * with probability about 2^-64, so a hash match still has to be confirmed against the
+ * full state.
+ */
+public final class Zobrist {
+    private static final long DEFAULT_SEED = 0x6b6c6f74736b69L;
+
+    private final long[][] keys; // [type][cell]
+
+    public Zobrist(int cells) {
+        this(cells, DEFAULT_SEED);
+    }
+
+    public Zobrist(int cells, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        keys = new long[PackedBoard.NUM_TYPES][cells];
+        for (long[] typeKeys : keys) {
+            for (int cell = 0; cell < cells; cell++) typeKeys[cell] = random.nextLong();
+        }
+    }
+
+    public long hash(Board board) {
+        long hash = 0L;
+        for (Piece piece : board.getPieces()) hash ^= keys[piece.getType()][piece.getTopLeft()];
+        return hash;
+    }
+
+    /** The hash after a piece of the type moves its top-left from one cell to another. */
+    public long move(long hash, int type, int fromTopLeft, int toTopLeft) {
+        return hash ^ keys[type][fromTopLeft] ^ keys[type][toTopLeft];
+    }
+}
@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PackedBoard's mask arithmetic checked against Board.movePiece, which moves one piece one
+ * cell at a time, on a sample of the states reachable in Donkey and Pennant.
+ */
+class PackedBoardTest {
+    private static final char[] DIRS = {'u', 'd', 'l', 'r'};
+
+    @Test
+    void slidesMatchBoardMoves() {
+        for (Board start : TestBoards.all()) {
+            PackedBoard packed = new PackedBoard(start);
+            StateCodec codec = new StateCodec(packed);
+            long[] codes = new long[packed.maxSuccessors()];
+            int[] moves = new int[packed.maxSuccessors()];
+            long[] out = new long[packed.successorStatesLength()];
+            long[] masks = new long[PackedBoard.NUM_TYPES * 4];
+            for (long[] state : TestBoards.sampleStates(start)) {
+                HashSet<Long> expected = new HashSet<>();
+                for (Board next : boardSuccessors(packed.toBoard(state))) expected.add(codec.encode(next));
+
+                int n = packed.successors(state, codec, codes, moves);
+                HashSet<Long> actual = new HashSet<>();
+                for (int i = 0; i < n; i++) {
+                    actual.add(codes[i]);
+                    long[] applied = state.clone();
+                    packed.applyMove(applied, moves[i]);
+                    assertEquals(codes[i], codec.encode(applied), "move code does not lead to its successor");
+                }
+                assertEquals(expected, actual);
+
+                int bulk = packed.successorStates(state, out);
+                HashSet<Long> bulkCodes = new HashSet<>();
+                for (int i = 0; i < bulk; i++) {
+                    long[] next = new long[PackedBoard.NUM_TYPES];
+                    System.arraycopy(out, i * PackedBoard.NUM_TYPES, next, 0, PackedBoard.NUM_TYPES);
+                    bulkCodes.add(codec.encode(next));
+                }
+                assertEquals(n, bulk);
+                assertEquals(expected, bulkCodes);
+                assertEquals(n, packed.moveMasks(state, masks));
+            }
+        }
+    }
+
+    @Test
+    void mirrorIsAnInvolutionThatCommutesWithMoves() {
+        for (Board start : TestBoards.all()) {
+            PackedBoard packed = new PackedBoard(start);
+            StateCodec codec = new StateCodec(packed);
+            long[] codes = new long[packed.maxSuccessors()];
+            int[] moves = new int[packed.maxSuccessors()];
+            long[] mirrored = new long[PackedBoard.NUM_TYPES];
+            long[] back = new long[PackedBoard.NUM_TYPES];
+            for (long[] state : TestBoards.sampleStates(start)) {
+                packed.mirror(state, mirrored);
+                packed.mirror(mirrored, back);
+                assertArrayEquals(state, back);
+                assertEquals(packed.occupancy(mirrored), packed.mirrorCells(packed.occupancy(state)));
+
+                int n = packed.successors(state, codec, codes, moves);
+                for (int i = 0; i < n; i++) {
+                    long[] moved = state.clone();
+                    packed.applyMove(moved, moves[i]);
+                    long[] expected = new long[PackedBoard.NUM_TYPES];
+                    packed.mirror(moved, expected);
+
+                    long[] actual = mirrored.clone();
+                    packed.applyMove(actual, packed.mirrorMove(moves[i]));
+                    assertArrayEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    void macroMovesReachExactlyWhereRepeatedSlidesGo() {
+        for (Board start : TestBoards.all()) {
+            PackedBoard packed = new PackedBoard(start);
+            StateCodec codec = new StateCodec(packed);
+            int[] macros = new int[packed.maxMacroMoves()];
+            for (long[] state : TestBoards.sampleStates(start)) {
+                HashSet<Long> expected = new HashSet<>();
+                Board board = packed.toBoard(state);
+                for (int p = 0; p < board.getPieces().size(); p++) expected.addAll(singlePieceClosure(board, p, codec));
+
+                int n = packed.macroMoves(state, macros);
+                HashSet<Long> actual = new HashSet<>();
+                for (int i = 0; i < n; i++) {
+                    long[] moved = state.clone();
+                    packed.applyMacroMove(moved, macros[i]);
+                    actual.add(codec.encode(moved));
+
+                    // The step-by-step path must be legal on a real board and end where the macro move does
+                    Board replay = packed.toBoard(state);
+                    Piece piece = TestBoards.pieceAt(replay, macros[i] & 3, PackedBoard.macroFrom(macros[i]));
+                    for (char dir : packed.macroPath(state, macros[i])) assertTrue(replay.movePiece(piece, dir));
+                    assertEquals(codec.encode(moved), codec.encode(replay));
+                }
+                assertEquals(n, actual.size(), "duplicate macro moves");
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    /** Every board one single-cell slide away, found by trying each piece in each direction. */
+    private static ArrayList<Board> boardSuccessors(Board board) {
+        ArrayList<Board> successors = new ArrayList<>();
+        for (int p = 0; p < board.getPieces().size(); p++) {
+            for (char dir : DIRS) {
+                Board next = new Board(board);
+                if (next.movePiece(next.getPieces().get(p), dir)) successors.add(next);
+            }
+        }
+        return successors;
+    }
+
+    /** Codes of the states where piece p ends up after one or more slides with every other piece still. */
+    private static HashSet<Long> singlePieceClosure(Board board, int p, StateCodec codec) {
+        long startCode = codec.encode(board);
+        HashSet<Long> seen = new HashSet<>();
+        seen.add(startCode);
+        ArrayList<Board> queue = new ArrayList<>();
+        queue.add(board);
+        for (int head = 0; head < queue.size(); head++) {
+            for (char dir : DIRS) {
+                Board next = new Board(queue.get(head));
+                if (next.movePiece(next.getPieces().get(p), dir) && seen.add(codec.encode(next))) queue.add(next);
+            }
+        }
+        seen.remove(startCode);
+        return seen;
+    }
+}
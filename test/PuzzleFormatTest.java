@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class PuzzleFormatTest {
+    private static final String DONKEY_TEXT =
+            "name=donkey 5x4 goal=6 2x2@18 2x1@19 2x1@16 2x1@11 2x1@8 1x2@10 1x1@6 1x1@5 1x1@3 1x1@0";
+    private static final String DONKEY_JSON = "{\"name\":\"donkey\",\"rows\":5,\"cols\":4,\"goal\":6,\"pieces\":"
+            + "[[18,2,2],[19,2,1],[16,2,1],[11,2,1],[8,2,1],[10,1,2],[6,1,1],[5,1,1],[3,1,1],[0,1,1]]}";
+
+    @Test
+    void textAndJsonDescribeTheSameBoard() {
+        PuzzleFormat.Puzzle text = PuzzleFormat.parse(DONKEY_TEXT);
+        PuzzleFormat.Puzzle json = PuzzleFormat.parse("  " + DONKEY_JSON + "  ");
+        assertEquals("donkey", text.name);
+        assertEquals("donkey", json.name);
+        assertSameBoard(TestBoards.donkey(), text.board);
+        assertSameBoard(TestBoards.donkey(), json.board);
+    }
+
+    @Test
+    void writtenFormsParseBack() {
+        Board pennant = TestBoards.pennant();
+        assertSameBoard(pennant, PuzzleFormat.parse(PuzzleFormat.toText("pennant", pennant)).board);
+        assertSameBoard(pennant, PuzzleFormat.parse(PuzzleFormat.toJson("pennant", pennant)).board);
+        assertEquals(DONKEY_TEXT, PuzzleFormat.toText("donkey", PuzzleFormat.parse(DONKEY_TEXT).board));
+        assertEquals(DONKEY_JSON, PuzzleFormat.toJson("donkey", PuzzleFormat.parse(DONKEY_JSON).board));
+
+        PuzzleFormat.Puzzle unnamed = PuzzleFormat.parse("5x4 goal=6 2x2@18");
+        assertNull(unnamed.name);
+        assertEquals("5x4 goal=6 2x2@18", PuzzleFormat.toText(null, unnamed.board));
+        assertEquals("a \"quoted\"\\\n name", PuzzleFormat.parse(PuzzleFormat.toJson("a \"quoted\"\\\n name", unnamed.board)).name);
+    }
+
+    @Test
+    void rejectsGoalsA2x2CannotReach() {
+        for (String goal : new String[] {"-1", "20", "70", "0", "3", "4", "16"}) {
+            // Off the board, on the bottom row, or in the rightmost column
+            assertThrows(IllegalArgumentException.class, () -> PuzzleFormat.parse("5x4 goal=" + goal + " 2x2@18"), goal);
+            assertThrows(IllegalArgumentException.class,
+                    () -> PuzzleFormat.parse("{\"rows\":5,\"cols\":4,\"goal\":" + goal + ",\"pieces\":[[18,2,2]]}"), goal);
+        }
+        assertEquals(19, PuzzleFormat.parse("5x4 goal=19 2x2@18").board.getGoalSquare());
+        assertEquals(5, PuzzleFormat.parse("5x4 goal=5 2x2@18").board.getGoalSquare());
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        String[] bad = {
+            "5x4 2x2@18",                                                  // No goal
+            "goal=6 2x2@18",                                               // No size
+            "2x2@18 5x4 goal=6",                                           // Piece before the size
+            "5x4 5x4 goal=6",                                              // Size twice
+            "5x4 goal=6 2x2@18 1x1@18",                                    // Overlap
+            "5x4 goal=6 2x2@16",                                           // Off the right edge
+            "5x4 goal=6 3x1@18",                                           // No such piece
+            "5x4 goal=six",
+            "{\"rows\":5,\"goal\":6,\"pieces\":[]}",                       // No cols
+            "{\"rows\":5,\"cols\":4,\"goal\":6,\"pieces\":[[18,2]]}",
+            "{\"rows\":5,\"cols\":4,\"goal\":6,\"pieces\":[[18,2,2]]} x",  // Text after the object
+            "{\"rows\":5,\"cols\":4,\"goal\":6,\"pieces\":[[18,2,2]]",
+            "{\"rows\":5.5,\"cols\":4,\"goal\":6,\"pieces\":[]}",
+        };
+        for (String line : bad) assertThrows(IllegalArgumentException.class, () -> PuzzleFormat.parse(line), line);
+    }
+
+    private static void assertSameBoard(Board expected, Board actual) {
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+        assertEquals(expected.getNumCols(), actual.getNumCols());
+        assertEquals(expected.getGoalSquare(), actual.getGoalSquare());
+        long[] expectedState = new long[PackedBoard.NUM_TYPES];
+        long[] actualState = new long[PackedBoard.NUM_TYPES];
+        new PackedBoard(expected).load(expected, expectedState);
+        new PackedBoard(actual).load(actual, actualState);
+        assertArrayEquals(expectedState, actualState);
+    }
+}
@@ -0,0 +1,123 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Every solver and solver mode on Donkey and Pennant: each must return a solution that
+ * replays to the goal, of the optimal length for its move metric.
+ */
+class SolverAgreementTest {
+    private static final int DONKEY_MOVES = 116;
+    private static final int DONKEY_MACRO_MOVES = 81;
+    private static final int PENNANT_MOVES = 83;
+    private static final int PENNANT_MACRO_MOVES = 59;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void donkey() throws IOException {
+        checkAll(TestBoards.donkey(), DONKEY_MOVES, DONKEY_MACRO_MOVES);
+    }
+
+    @Test
+    void pennant() throws IOException {
+        checkAll(TestBoards.pennant(), PENNANT_MOVES, PENNANT_MACRO_MOVES);
+    }
+
+    private void checkAll(Board start, int moves, int macroMoves) throws IOException {
+        check(start, moves, bfs(start, options -> {}));
+        check(start, moves, bfs(start, options -> options.mirrorSymmetry = true));
+        check(start, moves, bfs(start, options -> options.bidirectional = true));
+        check(start, moves, bfs(start, options -> options.offHeapVisited = true));
+        check(start, macroMoves, bfs(start, options -> options.macroMoves = true));
+        check(start, macroMoves, bfs(start, options -> {
+            options.macroMoves = true;
+            options.mirrorSymmetry = true;
+        }));
+        // Bidirectional search has no macro moves, so the macro metric must win
+        check(start, macroMoves, bfs(start, options -> {
+            options.macroMoves = true;
+            options.bidirectional = true;
+        }));
+
+        check(start, moves, new ParallelBFS(start).solve(new Board(start)));
+        check(start, moves, new AStar(start, Heuristic.MANHATTAN_BLOCKING).solve(new Board(start)));
+        try (ExternalBFS external = new ExternalBFS(start)) {
+            check(start, moves, external.solve(new Board(start)));
+        }
+
+        PatternDatabase patterns = PatternDatabase.build(new PackedBoard(start));
+        check(start, moves, new AStar(start, patterns).solve(new Board(start)));
+        check(start, moves, bfs(start, options -> options.patternDatabase = patterns));
+        check(start, moves, bfs(start, options -> {
+            options.patternDatabase = patterns;
+            options.bidirectional = true;
+        }));
+
+        try (DistanceDatabase db = DistanceDatabase.build(start)) {
+            check(start, moves, db.solve(start));
+            Path file = dir.resolve("solution.kldb");
+            SolutionFile.write(db, start, file);
+            try (SolutionFile solutions = SolutionFile.open(file)) {
+                assertTrue(solutions.isStart(start));
+                check(start, moves, solutions.solve(start));
+            }
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void idaStarNearTheGoal() {
+        for (Board start : TestBoards.all()) {
+            ArrayList<BFS.Move> full = bfs(start, options -> {});
+            Board near = new Board(start);
+            int skipped = full.size() - 20;
+            for (BFS.Move move : full.subList(0, skipped)) {
+                near.movePiece(TestBoards.pieceAt(near, move.type, move.fromTopLeft), move.dir);
+            }
+            check(near, 20, new IDAStar(near, Heuristic.MANHATTAN_BLOCKING).solve(new Board(near)));
+            check(near, 20, new IDAStar(near, PatternDatabase.build(new PackedBoard(near))).solve(new Board(near)));
+        }
+    }
+
+    @Test
+    void solveCacheAnswersAlongAndOffTheSolution() {
+        Board start = TestBoards.donkey();
+        SolveCache cache = new SolveCache();
+        SolverOptions options = new SolverOptions();
+        ArrayList<BFS.Move> first = cache.solve(start, options);
+        check(start, DONKEY_MOVES, first);
+
+        Board along = new Board(start);
+        for (BFS.Move move : first.subList(0, 10)) {
+            along.movePiece(TestBoards.pieceAt(along, move.type, move.fromTopLeft), move.dir);
+        }
+        check(along, DONKEY_MOVES - 10, cache.solve(along, options));
+
+        // The bottom-left single steps right, off the cached path
+        Board off = new Board(start);
+        assertTrue(off.movePiece(TestBoards.pieceAt(off, Piece.ONE_BY_ONE, 3), 'r'));
+        check(off, bfs(off, o -> {}).size(), cache.solve(off, options));
+    }
+
+    private static ArrayList<BFS.Move> bfs(Board start, Consumer<SolverOptions> configure) {
+        SolverOptions options = new SolverOptions();
+        configure.accept(options);
+        try (BFS bfs = new BFS(start, options)) {
+            return bfs.solve(new Board(start));
+        }
+    }
+
+    private static void check(Board start, int expectedMoves, ArrayList<BFS.Move> moves) {
+        TestBoards.assertSolves(start, moves);
+        assertEquals(expectedMoves, moves.size());
+    }
+}
@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+
+class StateCodecTest {
+    @Test
+    void singleLongCodesRoundTrip() {
+        for (Board start : TestBoards.all()) {
+            PackedBoard packed = new PackedBoard(start);
+            StateCodec codec = new StateCodec(packed);
+            assertTrue(codec.fitsInLong());
+            long[] decoded = new long[PackedBoard.NUM_TYPES];
+            HashSet<Long> codes = new HashSet<>();
+            for (long[] state : TestBoards.sampleStates(start)) {
+                long code = codec.encode(state);
+                assertTrue(codes.add(code), "two states share a code");
+                codec.decode(code, decoded);
+                assertArrayEquals(state, decoded);
+                assertEquals(code, codec.encode(packed.toBoard(state)));
+                assertEquals(code, codec.encode(codec.toBoard(code)));
+            }
+        }
+    }
+
+    @Test
+    void wideCodesRoundTrip() {
+        Board start = PuzzleFormat.parse("6x6 goal=7 2x2@35 1x1@0").board;
+        PackedBoard packed = new PackedBoard(start);
+        StateCodec codec = new StateCodec(packed);
+        assertFalse(codec.fitsInLong());
+
+        long[] wide = new long[2];
+        long[] decoded = new long[PackedBoard.NUM_TYPES];
+        HashSet<String> codes = new HashSet<>();
+        try (BFS bfs = new BFS(start)) {
+            bfs.exploreAll(new Board(start));
+            VisitedStore visited = bfs.getVisited();
+            assertEquals(25 * 32, visited.size()); // Every 2x2 top-left, times every cell it leaves free
+            for (int id = 1; id < visited.nextId(); id++) {
+                codec.decodeWide(visited.getCode(id), visited.getCodeHi(id), decoded);
+                codec.encodeWide(decoded, wide);
+                assertEquals(visited.getCode(id), wide[0]);
+                assertEquals(visited.getCodeHi(id), wide[1]);
+                assertTrue(codes.add(wide[0] + ":" + wide[1]), "two states share a code");
+                assertEquals(1, Long.bitCount(decoded[Piece.TWO_BY_TWO]));
+                assertEquals(1, Long.bitCount(decoded[Piece.ONE_BY_ONE]));
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Layouts and helpers shared by the tests. */
+final class TestBoards {
+    private static final int SAMPLE_EVERY = 53; // About 450 Donkey and 20 Pennant states
+
+    private TestBoards() {}
+
+    static Board donkey() {
+        Board board = new Board();
+        board.initPiecesDonkey();
+        return board;
+    }
+
+    static Board pennant() {
+        Board board = new Board();
+        board.initPiecesPennant();
+        return board;
+    }
+
+    static List<Board> all() {
+        return List.of(donkey(), pennant());
+    }
+
+    /** Every SAMPLE_EVERY-th state reachable from start, in BFS order. */
+    static ArrayList<long[]> sampleStates(Board start) {
+        ArrayList<long[]> states = new ArrayList<>();
+        PackedBoard packed = new PackedBoard(start);
+        StateCodec codec = new StateCodec(packed);
+        try (BFS bfs = new BFS(start)) {
+            bfs.exploreAll(new Board(start));
+            VisitedStore visited = bfs.getVisited();
+            for (int id = 1; id < visited.nextId(); id += SAMPLE_EVERY) {
+                long[] state = new long[PackedBoard.NUM_TYPES];
+                codec.decode(visited.getCode(id), state);
+                states.add(state);
+            }
+        }
+        return states;
+    }
+
+    static Piece pieceAt(Board board, int type, int topLeft) {
+        for (Piece piece : board.getPieces()) {
+            if (piece.getType() == type && piece.getTopLeft() == topLeft) return piece;
+        }
+        return null;
+    }
+
+    /** Plays moves on a copy of start, failing on any illegal step, and checks that it ends at the goal. */
+    static void assertSolves(Board start, List<BFS.Move> moves) {
+        assertNotNull(moves, "no solution");
+        Board board = new Board(start);
+        for (BFS.Move move : moves) {
+            Piece piece = pieceAt(board, move.type, move.fromTopLeft);
+            assertNotNull(piece, "no piece for move");
+            for (char dir : move.path) assertTrue(board.movePiece(piece, dir), "illegal step");
+        }
+        assertNotNull(pieceAt(board, Piece.TWO_BY_TWO, board.getGoalSquare()), "solution does not end at the goal");
+    }
+}